@@ -0,0 +1,88 @@
+#!/bin/bash
+# AI对话并发压测
+#
+# 对比平台线程与虚拟线程下的并发处理能力：
+#   1. 启动模拟上游（不消耗真实API额度）:
+#        平台线程: SPRING_PROFILES_ACTIVE=dev,bench HIAGENT_API_URL=http://localhost:8080/api/mock mvn spring-boot:run
+#        虚拟线程: SPRING_PROFILES_ACTIVE=dev,bench,virtual HIAGENT_API_URL=http://localhost:8080/api/mock mvn -Pjdk21 spring-boot:run
+#   2. 运行压测: ./bench-chat.sh [并发数] [请求总数] [接口路径]
+#        ./bench-chat.sh 400 2000 /ai/chat
+#   3. 比较两次输出的吞吐量、延迟分位数与线程/连接池指标
+#
+# 连接池健康检查（500并发对话）: ./bench-chat.sh 500 5000
+#   AI调用期间不持有数据库连接，峰值活跃连接应远小于并发数，
+#   连接获取超时次数应为 0，/deposit/summary 探测延迟不应随压测上升
+
+CONCURRENCY=${1:-200}
+TOTAL=${2:-1000}
+ENDPOINT=${3:-/ai/chat}
+BASE_URL=${BASE_URL:-http://localhost:8080/api}
+
+RESULT_FILE=$(mktemp)
+trap 'rm -f "$RESULT_FILE"' EXIT
+
+metric() {
+    curl -s "$BASE_URL/actuator/metrics/$1" | grep -o '"value":[0-9.E]*' | head -1 | cut -d: -f2
+}
+
+echo "========================================"
+echo "🚀 AI对话并发压测"
+echo "========================================"
+echo "接口: $BASE_URL$ENDPOINT"
+echo "并发: $CONCURRENCY  请求总数: $TOTAL"
+echo ""
+
+TIMEOUTS_BEFORE=$(metric hikaricp.connections.timeout)
+START=$(date +%s.%N)
+
+seq "$TOTAL" | xargs -P "$CONCURRENCY" -I{} curl -s -o /dev/null \
+    -w "%{http_code} %{time_total}\n" \
+    -X POST "$BASE_URL$ENDPOINT" \
+    -H "Content-Type: application/json" \
+    -d '{"query":"本月存款增长情况如何？","module":"deposit"}' >> "$RESULT_FILE" &
+LOAD_PID=$!
+
+# 压测过程中采样线程数与连接池占用
+PEAK_THREADS=0
+PEAK_ACTIVE=0
+PEAK_PENDING=0
+PEAK_PROBE=0
+while kill -0 $LOAD_PID 2>/dev/null; do
+    PROBE=$(curl -s -o /dev/null -w "%{time_total}" "$BASE_URL/deposit/summary")
+    PEAK_PROBE=$(echo "$PROBE $PEAK_PROBE" | awk '{print ($1>$2)?$1:$2}')
+    THREADS=$(metric jvm.threads.live)
+    ACTIVE=$(metric hikaricp.connections.active)
+    PENDING=$(metric hikaricp.connections.pending)
+    PEAK_THREADS=$(echo "$THREADS $PEAK_THREADS" | awk '{print ($1>$2)?$1:$2}')
+    PEAK_ACTIVE=$(echo "$ACTIVE $PEAK_ACTIVE" | awk '{print ($1>$2)?$1:$2}')
+    PEAK_PENDING=$(echo "$PENDING $PEAK_PENDING" | awk '{print ($1>$2)?$1:$2}')
+    sleep 1
+done
+wait $LOAD_PID
+
+END=$(date +%s.%N)
+TIMEOUTS_AFTER=$(metric hikaricp.connections.timeout)
+
+OK=$(grep -c '^200 ' "$RESULT_FILE")
+ELAPSED=$(echo "$START $END" | awk '{printf "%.2f", $2-$1}')
+
+echo "----------------------------------------"
+echo "耗时:       ${ELAPSED}s"
+echo "成功/总数:  $OK/$TOTAL"
+echo "吞吐量:     $(echo "$OK $ELAPSED" | awk '{printf "%.1f", $1/$2}') req/s"
+awk '{print $2}' "$RESULT_FILE" | sort -n | awk '
+    function pct(p,   i) { i = int(NR * p); return t[i < 1 ? 1 : i] }
+    { t[NR] = $1 }
+    END {
+        if (NR == 0) exit
+        printf "延迟 p50:   %.3fs\n", pct(0.50)
+        printf "延迟 p95:   %.3fs\n", pct(0.95)
+        printf "延迟 p99:   %.3fs\n", pct(0.99)
+        printf "延迟 max:   %.3fs\n", t[NR]
+    }'
+echo "峰值JVM线程数:        $PEAK_THREADS"
+echo "峰值活跃数据库连接:   $PEAK_ACTIVE"
+echo "峰值等待数据库连接:   $PEAK_PENDING"
+echo "连接获取超时次数:     $(echo "${TIMEOUTS_BEFORE:-0} ${TIMEOUTS_AFTER:-0}" | awk '{printf "%d", $2-$1}')"
+echo "/deposit/summary 峰值延迟: ${PEAK_PROBE}s"
+echo "========================================"
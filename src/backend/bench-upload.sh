@@ -0,0 +1,70 @@
+#!/bin/bash
+# CSV导入压测
+#
+# 验证流式导入的内存占用与文件大小无关：
+#   1. 以小堆启动（文件型H2，避免内存数据库本身占满堆；放开上传大小限制）:
+#        SPRING_DATASOURCE_URL="jdbc:h2:file:/tmp/bench_bi;MODE=PostgreSQL" mvn spring-boot:run \
+#          -Dspring-boot.run.jvmArguments="-Xmx512m" \
+#          -Dspring-boot.run.arguments="--spring.servlet.multipart.max-file-size=2GB --spring.servlet.multipart.max-request-size=2GB"
+#   2. 运行压测: ./bench-upload.sh [行数]
+#        ./bench-upload.sh 10000000
+#   3. 导入应成功完成，峰值堆内存应稳定在 -Xmx 以内且不随行数增长
+
+ROWS=${1:-10000000}
+BASE_URL=${BASE_URL:-http://localhost:8080/api}
+CSV_FILE=${CSV_FILE:-/tmp/bench_upload_${ROWS}.csv}
+
+metric() {
+    curl -s "$BASE_URL/actuator/metrics/$1" | grep -o '"value":[0-9.E]*' | head -1 | cut -d: -f2
+}
+
+echo "========================================"
+echo "📥 CSV导入压测"
+echo "========================================"
+
+if [ ! -f "$CSV_FILE" ]; then
+    echo "生成测试文件: $CSV_FILE ($ROWS 行)"
+    awk -v n="$ROWS" 'BEGIN {
+        srand(42)
+        split("朝阳支行,海淀支行,西城支行,东城支行,丰台支行,通州支行", branches, ",")
+        print "biz_date,branch,customer_id,balance,txn_count"
+        for (i = 1; i <= n; i++) {
+            printf "2024-%02d-%02d,%s,%d,%.2f,%d\n", (i % 12) + 1, (i % 28) + 1,
+                branches[(i % 6) + 1], 100000 + i, rand() * 1000000, int(rand() * 50)
+        }
+    }' > "$CSV_FILE"
+fi
+echo "文件: $CSV_FILE ($(du -h "$CSV_FILE" | cut -f1))"
+echo ""
+
+RESULT_FILE=$(mktemp)
+trap 'rm -f "$RESULT_FILE"' EXIT
+
+START=$(date +%s.%N)
+curl -s -o "$RESULT_FILE" -w "%{http_code}" \
+    -X POST "$BASE_URL/data/upload" \
+    -F "file=@$CSV_FILE" \
+    -F "tableName=bench_upload_$ROWS" > "$RESULT_FILE.code" &
+LOAD_PID=$!
+
+# 导入过程中采样堆内存
+PEAK_HEAP=0
+while kill -0 $LOAD_PID 2>/dev/null; do
+    HEAP=$(metric "jvm.memory.used?tag=area:heap")
+    PEAK_HEAP=$(echo "${HEAP:-0} $PEAK_HEAP" | awk '{print ($1>$2)?$1:$2}')
+    sleep 1
+done
+wait $LOAD_PID
+END=$(date +%s.%N)
+
+ELAPSED=$(echo "$START $END" | awk '{printf "%.2f", $2-$1}')
+HEAP_MAX=$(metric "jvm.memory.max?tag=area:heap")
+
+echo "----------------------------------------"
+echo "HTTP状态:     $(cat "$RESULT_FILE.code")"
+echo "响应:         $(head -c 300 "$RESULT_FILE")"
+echo "耗时:         ${ELAPSED}s"
+echo "导入速度:     $(echo "$ROWS $ELAPSED" | awk '{printf "%.0f", $1/$2}') rows/s"
+echo "峰值堆内存:   $(echo "$PEAK_HEAP" | awk '{printf "%.0f", $1/1048576}') MB / $(echo "${HEAP_MAX:-0}" | awk '{printf "%.0f", $1/1048576}') MB"
+echo "========================================"
+rm -f "$RESULT_FILE.code"
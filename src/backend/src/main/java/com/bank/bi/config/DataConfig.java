@@ -0,0 +1,126 @@
+package com.bank.bi.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+/**
+ * 数据管理配置（上传数据表的查询、导入等）
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "data")
+public class DataConfig {
+    
+    /** 查询结果缓存 */
+    private QueryCache queryCache = new QueryCache();
+    
+    /** AI 生成查询的安全与代价校验 */
+    private QueryGuard queryGuard = new QueryGuard();
+    
+    /** 异步上传任务 */
+    private Upload upload = new Upload();
+    
+    /** 导入后的列统计与自动索引 */
+    private Statistics statistics = new Statistics();
+    
+    /**
+     * 导入时并行转换行数据的专用线程池，不占用 commonPool（parallel stream、CompletableFuture 默认使用）
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ForkJoinPool uploadConvertPool() {
+        int threads = upload.getConvertThreads() > 0
+                ? upload.getConvertThreads() : Runtime.getRuntime().availableProcessors();
+        return new ForkJoinPool(threads, pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("data-convert-" + thread.getPoolIndex());
+            return thread;
+        }, null, false);
+    }
+    
+    /**
+     * 查询结果缓存配置（data.query-cache.*）
+     */
+    @Data
+    public static class QueryCache {
+        private boolean enabled = true;
+        /** 缓存结果的总估算内存上限（字节） */
+        private long maxBytes = 64L * 1024 * 1024;
+        /** 单条结果超过该估算大小（字节）时不缓存 */
+        private long maxEntryBytes = 4L * 1024 * 1024;
+    }
+    
+    /**
+     * 查询校验配置（data.query-guard.*）
+     */
+    @Data
+    public static class QueryGuard {
+        /** 最外层查询的最大返回行数 */
+        private int maxRows = 100;
+        /** 流式查询（/data/query/{queryId}/stream）的最大返回行数 */
+        private int streamMaxRows = 1_000_000;
+        /** 流式查询响应的超时（秒），大结果集写给慢速客户端可能超过 spring.mvc.async.request-timeout，按此单独设置 */
+        private int streamTimeoutSeconds = 1800;
+        /** 流式查询每次从数据库读取的行数 */
+        private int fetchSize = 1000;
+        /** 智能分析执行过的查询保留时长（分钟），期间可按查询ID流式读取完整结果 */
+        private int savedQueryTtlMinutes = 30;
+        /** 保留的查询数上限，超出时淘汰最久未使用的 */
+        private int maxSavedQueries = 1000;
+        /** 单条查询超时（秒），超时由数据库取消执行 */
+        private int queryTimeoutSeconds = 15;
+        /** 执行前是否用 EXPLAIN 估算代价 */
+        private boolean explainEnabled = true;
+        /** PostgreSQL：EXPLAIN 估算的 Total Cost 上限 */
+        private double maxPlanCost = 1_000_000;
+        /** H2：估算扫描行数上限（执行计划中全表扫描各表行数之积，H2 按嵌套循环连接） */
+        private double maxScanRows = 50_000_000;
+        /** 允许查询的表名（正则，不区分大小写） */
+        private String allowedTables = "user_data_\\w+";
+    }
+    
+    /**
+     * 异步上传任务配置（data.upload.*）
+     */
+    @Data
+    public static class Upload {
+        /** 导入工作线程数，同时执行的导入任务数上限 */
+        private int workerThreads = 2;
+        /** 排队任务数上限，超出时拒绝新的上传 */
+        private int queueCapacity = 10;
+        /** 并行转换行数据的线程数，所有导入任务共用；0 表示使用 CPU 核数 */
+        private int convertThreads = 0;
+        /** 上传文件落盘目录 */
+        private String spoolDir = System.getProperty("java.io.tmpdir") + "/bank-bi-upload";
+        /** 任务结束后保留状态的时间（分钟） */
+        private int jobRetentionMinutes = 60;
+        /** SSE 推送进度的间隔（毫秒） */
+        private long progressIntervalMillis = 1000;
+        /** 大文件是否使用数据库原生批量载入（PostgreSQL COPY / H2 CSVREAD） */
+        private boolean bulkLoadEnabled = true;
+        /** 文件达到该大小（字节）时使用批量载入，小文件逐行导入 */
+        private long bulkLoadMinBytes = 32L * 1024 * 1024;
+    }
+    
+    /**
+     * 列统计与自动索引配置（data.statistics.*）
+     */
+    @Data
+    public static class Statistics {
+        private boolean enabled = true;
+        /** 行数超过该值时按抽样估算不同值个数，全表 COUNT(DISTINCT) 在 H2 中需要把所有不同值放进内存 */
+        private long distinctSampleRows = 100_000;
+        /** 行数达到该值才自动建索引，小表全表扫描已足够快 */
+        private long indexMinRows = 10_000;
+        /** 维度列不同值个数不超过行数的该比例时建索引（日期列不受限制） */
+        private double indexMaxDistinctRatio = 0.2;
+        /** 每张表最多自动创建的索引数 */
+        private int maxIndexesPerTable = 8;
+        /** 等待后台统计的数据表数上限，排满时新表跳过统计 */
+        private int queueCapacity = 100;
+    }
+}
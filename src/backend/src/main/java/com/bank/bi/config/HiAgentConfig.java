@@ -1,10 +1,24 @@
 package com.bank.bi.config;
 
+import io.netty.channel.ChannelOption;
+import io.netty.handler.timeout.WriteTimeoutHandler;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.Http11SslContextSpec;
+import reactor.netty.http.Http2SslContextSpec;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.netty.tcp.SslProvider;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * HiAgent配置
@@ -21,12 +35,241 @@ public class HiAgentConfig {
     private Integer maxTokens;
     private Double temperature;
     
+    /** HTTP连接 */
+    private Http http = new Http();
+    
+    /** 每轮对话携带的历史消息数（10轮） */
+    private Integer historySize = 20;
+    
+    /** 内存中缓存上下文的对话数 */
+    private Integer contextCacheSize = 1000;
+    
+    /** AI响应缓存 */
+    private Cache cache = new Cache();
+    
+    /** 语义答案缓存 */
+    private SemanticCache semanticCache = new SemanticCache();
+    
+    /** 熔断、隔离与重试 */
+    private Resilience resilience = new Resilience();
+    
+    /** 上游配额限流 */
+    private RateLimit rateLimit = new RateLimit();
+    
+    /** 问题 → SQL 模板缓存 */
+    private SqlCache sqlCache = new SqlCache();
+    
+    /** Text-to-SQL Schema 裁剪 */
+    private SchemaRetrieval schemaRetrieval = new SchemaRetrieval();
+    
+    /** 分析提示词中的查询结果摘要 */
+    private ResultSummary resultSummary = new ResultSummary();
+    
+    /**
+     * HiAgent专用连接池：复用长连接，避免每次调用重新握手
+     */
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider hiAgentConnectionProvider() {
+        return ConnectionProvider.builder("hiagent")
+                .maxConnections(http.getMaxConnections())
+                .pendingAcquireMaxCount(http.getPendingAcquireMaxCount())
+                .pendingAcquireTimeout(Duration.ofMillis(http.getPendingAcquireTimeout()))
+                .maxIdleTime(Duration.ofMillis(http.getMaxIdleTime()))
+                .maxLifeTime(Duration.ofMillis(http.getMaxLifeTime()))
+                .evictInBackground(Duration.ofMillis(http.getEvictInterval()))
+                .metrics(http.isMetrics())
+                .build();
+    }
+    
     @Bean
-    public WebClient hiAgentWebClient() {
+    public WebClient hiAgentWebClient(ConnectionProvider hiAgentConnectionProvider) {
+        HttpClient httpClient = HttpClient.create(hiAgentConnectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, http.getConnectTimeout())
+                .option(ChannelOption.SO_KEEPALIVE, http.isKeepAlive())
+                .keepAlive(http.isKeepAlive())
+                .compress(http.isCompress())
+                .responseTimeout(Duration.ofMillis(http.getResponseTimeout()))
+                .doOnConnected(conn -> conn.addHandlerLast(
+                        new WriteTimeoutHandler(http.getWriteTimeout(), TimeUnit.MILLISECONDS)))
+                .metrics(http.isMetrics(), uri -> uri);
+        
+        if (apiUrl != null && apiUrl.startsWith("https")) {
+            SslProvider.ProtocolSslContextSpec sslSpec = http.isHttp2()
+                    ? Http2SslContextSpec.forClient()
+                    : Http11SslContextSpec.forClient();
+            httpClient = httpClient.secure(spec -> spec.sslContext(sslSpec)
+                    .handshakeTimeout(Duration.ofMillis(http.getHandshakeTimeout())));
+        }
+        if (http.isHttp2()) {
+            httpClient = httpClient.protocol(HttpProtocol.H2, HttpProtocol.HTTP11);
+        }
+        
         return WebClient.builder()
                 .baseUrl(apiUrl)
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .codecs(codecs -> codecs.defaultCodecs().maxInMemorySize(http.getMaxInMemorySize()))
                 .defaultHeader("Authorization", "Bearer " + apiKey)
                 .defaultHeader("Content-Type", "application/json")
                 .build();
     }
+    
+    /**
+     * HTTP连接配置（hiagent.http.*），时间单位均为毫秒
+     */
+    @Data
+    public static class Http {
+        /** 连接池最大连接数 */
+        private int maxConnections = 200;
+        /** 等待获取连接的最大排队数 */
+        private int pendingAcquireMaxCount = 1000;
+        /** 等待获取连接的超时 */
+        private long pendingAcquireTimeout = 5000;
+        /** 空闲连接保留时间（需小于上游的空闲断开时间） */
+        private long maxIdleTime = 30000;
+        /** 连接最长存活时间 */
+        private long maxLifeTime = 300000;
+        /** 后台清理空闲/过期连接的间隔 */
+        private long evictInterval = 30000;
+        /** TCP 建连超时 */
+        private int connectTimeout = 3000;
+        /** TLS 握手超时 */
+        private long handshakeTimeout = 5000;
+        /** 两次读取响应数据之间的最大间隔 */
+        private long responseTimeout = 30000;
+        /** 写出请求的超时 */
+        private long writeTimeout = 10000;
+        private boolean keepAlive = true;
+        private boolean http2 = false;
+        /** 请求 gzip 压缩的响应 */
+        private boolean compress = true;
+        /** 单个响应允许缓冲的最大字节数 */
+        private int maxInMemorySize = 4 * 1024 * 1024;
+        /** 导出连接池与请求指标（reactor.netty.*） */
+        private boolean metrics = true;
+    }
+    
+    /**
+     * AI响应缓存配置（hiagent.cache.*）
+     */
+    @Data
+    public static class Cache {
+        private boolean enabled = true;
+        /** 最大缓存条数 */
+        private int maxEntries = 1000;
+        /** 缓存有效期（秒） */
+        private long ttlSeconds = 3600;
+        /**
+         * 允许缓存的最高 temperature；默认与对话的 hiagent.temperature 相同，使相同的新对话首问复用答案，
+         * 调低后只缓存 SQL 生成等结果确定的请求
+         */
+        private double maxTemperature = 0.7;
+    }
+    
+    /**
+     * 语义答案缓存配置（hiagent.semantic-cache.*）
+     */
+    @Data
+    public static class SemanticCache {
+        /** 默认关闭：近似匹配可能把措辞相近、含义不同的问题视为同一问题，需按场景评估后开启 */
+        private boolean enabled = false;
+        /** 余弦相似度阈值，达到该值视为同一问题 */
+        private double threshold = 0.92;
+        /** 向量维度 */
+        private int dimensions = 512;
+        /** 每个模块最多缓存的问题数 */
+        private int maxEntriesPerModule = 500;
+        /** 缓存有效期（秒） */
+        private long ttlSeconds = 3600;
+    }
+    
+    /**
+     * 熔断、隔离与重试配置（hiagent.resilience.*），时间单位均为毫秒
+     */
+    @Data
+    public static class Resilience {
+        /** 失败率达到该百分比时熔断 */
+        private float failureRateThreshold = 50;
+        /** 慢调用比例达到该百分比时熔断 */
+        private float slowCallRateThreshold = 80;
+        /** 超过该耗时视为慢调用 */
+        private long slowCallDuration = 20000;
+        /** 统计失败率的最近调用数 */
+        private int slidingWindowSize = 20;
+        /** 开始计算失败率所需的最少调用数 */
+        private int minimumNumberOfCalls = 10;
+        /** 熔断后等待多久进入半开状态 */
+        private long waitDurationInOpenState = 30000;
+        /** 半开状态下放行的试探调用数 */
+        private int permittedCallsInHalfOpenState = 3;
+        /** 每个模块的最大并发调用数 */
+        private int maxConcurrentCalls = 50;
+        /** 按模块覆盖最大并发调用数，如 dashboard: 20 */
+        private Map<String, Integer> moduleConcurrentCalls = new HashMap<>();
+        /** 并发已满时的最长等待 */
+        private long maxWaitDuration = 0;
+        /** 最大重试次数 */
+        private int maxRetries = 2;
+        /** 首次重试的退避时间，之后指数增长并加随机抖动 */
+        private long retryBackoff = 500;
+        /** 仅重试 temperature 不超过该值的请求（如SQL生成），结果确定、重复调用无副作用 */
+        private double retryMaxTemperature = 0.2;
+    }
+    
+    /**
+     * 上游配额限流配置（hiagent.rate-limit.*）
+     */
+    @Data
+    public static class RateLimit {
+        private boolean enabled = true;
+        /** 每分钟请求数上限（RPM） */
+        private int requestsPerMinute = 300;
+        /** 每分钟 token 数上限（TPM），按提示词估算值加 max_tokens 预留 */
+        private int tokensPerMinute = 300000;
+        /** 最大排队请求数，超出后直接拒绝 */
+        private int maxQueueSize = 1000;
+        /** 最长排队时间（毫秒） */
+        private long maxQueueWait = 30000;
+    }
+    
+    /**
+     * Text-to-SQL Schema 裁剪配置（hiagent.schema-retrieval.*）
+     */
+    @Data
+    public static class SchemaRetrieval {
+        /** 提示词中最多包含的数据表数，数据表总数不超过该值时不裁剪 */
+        private int topK = 8;
+        /** Schema 部分的 token 上限（至少保留一张表） */
+        private int maxPromptTokens = 3000;
+        /** 向量相似度在综合得分中的权重，0 表示只用词面匹配 */
+        private double embeddingWeight = 0.3;
+    }
+    
+    /**
+     * 问题 → SQL 模板缓存配置（hiagent.sql-cache.*）
+     */
+    @Data
+    public static class SqlCache {
+        private boolean enabled = true;
+        /** 最大模板数 */
+        private int maxEntries = 2000;
+        /** 模板有效期（秒） */
+        private long ttlSeconds = 86400;
+        /** 最多记住的取值（网点名、产品名等）个数 */
+        private int maxKnownValues = 5000;
+    }
+    
+    /**
+     * 查询结果摘要配置（hiagent.result-summary.*）
+     */
+    @Data
+    public static class ResultSummary {
+        /** 摘要（列统计 + 数据行）的 token 上限，超出时对数据行抽样 */
+        private int maxPromptTokens = 2000;
+        /** 文本列列出出现次数最多的取值个数 */
+        private int topK = 5;
+        /** 单元格最大字符数，超出截断 */
+        private int maxCellChars = 60;
+        /** 文本列最多统计的不同取值数 */
+        private int maxDistinctTracked = 1000;
+    }
 }
@@ -0,0 +1,40 @@
+package com.bank.bi.config;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 线程模型配置
+ * 开启 spring.threads.virtual.enabled 后，Tomcat请求处理、@Async任务执行器均由Spring Boot切换为虚拟线程
+ */
+@Slf4j
+@Configuration
+public class ThreadingConfig {
+    
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreadsEnabled;
+    
+    /**
+     * 启动时检查虚拟线程模式是否真正生效
+     */
+    @PostConstruct
+    public void checkThreadingMode() {
+        if (!virtualThreadsEnabled) {
+            log.info("线程模型: 平台线程");
+            return;
+        }
+        
+        int javaVersion = Runtime.version().feature();
+        if (javaVersion < 21) {
+            log.warn("已配置虚拟线程，但当前JDK版本为{}，需要JDK 21+（使用 -Pjdk21 构建），仍使用平台线程", javaVersion);
+            return;
+        }
+        
+        log.info("线程模型: 虚拟线程（Tomcat请求、@Async任务）");
+        if (System.getProperty("jdk.tracePinnedThreads") == null) {
+            log.info("可添加 -Djdk.tracePinnedThreads=short 检测虚拟线程被 synchronized 钉住的情况");
+        }
+    }
+}
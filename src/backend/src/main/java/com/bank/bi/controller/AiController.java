@@ -10,7 +10,11 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.util.HashMap;
 import java.util.List;
@@ -31,7 +35,7 @@ public class AiController {
      * 发送消息（简化版，兼容前端）
      */
     @PostMapping("/chat")
-    public ResponseUtil.Result<Map<String, Object>> chat(
+    public Mono<ResponseUtil.Result<Map<String, Object>>> chat(
             @Valid @RequestBody ChatRequest request,
             HttpServletRequest httpRequest) {
         
@@ -44,30 +48,61 @@ public class AiController {
         
         log.info("用户{}发送消息: {}", userId, request.getQuery());
         
+        // 调用HiAgent进行多轮对话
+        return hiAgentService.multiRoundChatAsync(
+                        request.getQuery(),
+                        request.getModule(),
+                        request.getConversationId(),
+                        userId
+                )
+                .map(aiMessage -> {
+                    // 构建响应（匹配前端期望的格式）
+                    Map<String, Object> result = new HashMap<>();
+                    result.put("sessionId", "session-" + aiMessage.getConversationId());
+                    result.put("response", aiMessage.getContent());
+                    result.put("conversationId", aiMessage.getConversationId());
+                    result.put("messageId", aiMessage.getMessageId());
+                    result.put("intent", aiMessage.getIntent());
+                    result.put("success", true);
+                    result.put("data", aiMessage.getContent());
+                    
+                    return ResponseUtil.success(result);
+                })
+                .onErrorResume(e -> {
+                    log.error("AI对话失败", e);
+                    return Mono.just(ResponseUtil.error(500, "AI服务异常: " + e.getMessage()));
+                });
+    }
+    
+    /**
+     * 发送消息（流式，text/event-stream）
+     */
+    @PostMapping(value = "/chat/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Map<String, Object>>> chatStream(
+            @Valid @RequestBody ChatRequest request,
+            HttpServletRequest httpRequest) {
+        
+        Long userId = (Long) httpRequest.getAttribute("userId");
+        if (userId == null) {
+            userId = 1L;
+            log.warn("未检测到userId，使用默认值: 1");
+        }
+        
+        log.info("用户{}发送流式消息: {}", userId, request.getQuery());
+        
         try {
-            // 调用HiAgent进行多轮对话
-            Message aiMessage = hiAgentService.multiRoundChat(
+            return hiAgentService.multiRoundChatStream(
                     request.getQuery(),
                     request.getModule(),
                     request.getConversationId(),
                     userId
             );
-            
-            // 构建响应（匹配前端期望的格式）
-            Map<String, Object> result = new HashMap<>();
-            result.put("sessionId", "session-" + aiMessage.getConversationId());
-            result.put("response", aiMessage.getContent());
-            result.put("conversationId", aiMessage.getConversationId());
-            result.put("messageId", aiMessage.getMessageId());
-            result.put("intent", aiMessage.getIntent());
-            result.put("success", true);
-            result.put("data", aiMessage.getContent());
-            
-            return ResponseUtil.success(result);
-            
         } catch (Exception e) {
-            log.error("AI对话失败", e);
-            return ResponseUtil.error(500, "AI服务异常: " + e.getMessage());
+            log.error("AI流式对话失败", e);
+            return Flux.just(ServerSentEvent.<Map<String, Object>>builder()
+                    .event("error")
+                    .data(Map.of("message", "AI服务异常: " + e.getMessage()))
+                    .build());
         }
     }
     
@@ -75,7 +110,7 @@ public class AiController {
      * 发送消息（多轮对话 - 完整版）
      */
     @PostMapping("/message")
-    public ResponseUtil.Result<ChatResponse> sendMessage(
+    public Mono<ResponseUtil.Result<ChatResponse>> sendMessage(
             @Valid @RequestBody ChatRequest request,
             HttpServletRequest httpRequest) {
         
@@ -87,30 +122,29 @@ public class AiController {
         
         log.info("用户{}发送消息: {}", userId, request.getQuery());
         
-        try {
-            // 调用HiAgent进行多轮对话
-            Message aiMessage = hiAgentService.multiRoundChat(
-                    request.getQuery(),
-                    request.getModule(),
-                    request.getConversationId(),
-                    userId
-            );
-            
-            // 构建响应
-            ChatResponse response = ChatResponse.builder()
-                    .messageId(aiMessage.getMessageId())
-                    .conversationId(aiMessage.getConversationId())
-                    .content(aiMessage.getContent())
-                    .intent(aiMessage.getIntent())
-                    .timestamp(System.currentTimeMillis())
-                    .build();
-            
-            return ResponseUtil.success(response);
-            
-        } catch (Exception e) {
-            log.error("AI对话失败", e);
-            return ResponseUtil.error(500, "AI服务异常: " + e.getMessage());
-        }
+        // 调用HiAgent进行多轮对话
+        return hiAgentService.multiRoundChatAsync(
+                        request.getQuery(),
+                        request.getModule(),
+                        request.getConversationId(),
+                        userId
+                )
+                .map(aiMessage -> {
+                    // 构建响应
+                    ChatResponse response = ChatResponse.builder()
+                            .messageId(aiMessage.getMessageId())
+                            .conversationId(aiMessage.getConversationId())
+                            .content(aiMessage.getContent())
+                            .intent(aiMessage.getIntent())
+                            .timestamp(System.currentTimeMillis())
+                            .build();
+                    
+                    return ResponseUtil.success(response);
+                })
+                .onErrorResume(e -> {
+                    log.error("AI对话失败", e);
+                    return Mono.just(ResponseUtil.error(500, "AI服务异常: " + e.getMessage()));
+                });
     }
     
     /**
@@ -219,16 +253,32 @@ public class AiController {
     }
 
     @PostMapping("/analyze-data")
-    public ResponseUtil.Result<Map<String, Object>> analyzeData(@RequestBody Map<String, String> request) {
+    public Mono<ResponseUtil.Result<Map<String, Object>>> analyzeData(@RequestBody Map<String, String> request) {
         String query = request.get("query");
         if (query == null || query.trim().isEmpty()) {
-            return ResponseUtil.error("Query cannot be empty");
+            return Mono.just(ResponseUtil.error("Query cannot be empty"));
         }
-        try {
-            return ResponseUtil.success(hiAgentService.analyzeData(query));
-        } catch (Exception e) {
-            log.error("Data analysis failed", e);
-            return ResponseUtil.error("Analysis failed: " + e.getMessage());
+        return hiAgentService.analyzeDataAsync(query)
+                .map(ResponseUtil::success)
+                .onErrorResume(e -> {
+                    log.error("Data analysis failed", e);
+                    return Mono.just(ResponseUtil.error("Analysis failed: " + e.getMessage()));
+                });
+    }
+    
+    /**
+     * 智能数据分析（流式，text/event-stream）
+     * 事件：sql → data → delta（分析文本，多次）→ done，出错时为 error
+     */
+    @PostMapping(value = "/analyze-data/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Map<String, Object>>> analyzeDataStream(@RequestBody Map<String, String> request) {
+        String query = request.get("query");
+        if (query == null || query.trim().isEmpty()) {
+            return Flux.just(ServerSentEvent.<Map<String, Object>>builder()
+                    .event("error")
+                    .data(Map.of("message", "Query cannot be empty"))
+                    .build());
         }
+        return hiAgentService.analyzeDataStream(query);
     }
 }
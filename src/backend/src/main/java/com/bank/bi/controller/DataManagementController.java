@@ -1,23 +1,43 @@
 package com.bank.bi.controller;
 
+import com.bank.bi.model.dto.UploadJobStatus;
 import com.bank.bi.model.entity.data.DataTable;
 import com.bank.bi.service.DataManagementService;
+import com.bank.bi.service.UploadJobService;
 import com.bank.bi.util.ResponseUtil;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncUtils;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import reactor.core.publisher.Flux;
 
+import java.time.Duration;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
 
 @Slf4j
 @RestController
 @RequestMapping("/data")
 @RequiredArgsConstructor
 public class DataManagementController {
-
+    
     private final DataManagementService dataManagementService;
-
+    private final UploadJobService uploadJobService;
+    private final ObjectMapper objectMapper;
+    
     /**
      * 上传 CSV 数据文件
      */
@@ -42,6 +62,78 @@ public class DataManagementController {
         }
     }
     
+    /**
+     * 异步上传 CSV 数据文件：文件落盘后立即返回任务，导入在后台执行
+     */
+    @PostMapping("/upload/async")
+    public ResponseUtil.Result<UploadJobStatus> uploadDataAsync(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam(value = "tableName", required = false) String tableName) {
+        
+        try {
+            if (file.isEmpty()) {
+                return ResponseUtil.error("请选择文件");
+            }
+            
+            String name = tableName != null ? tableName : file.getOriginalFilename();
+            return ResponseUtil.success(uploadJobService.submit(file, name));
+            
+        } catch (Exception e) {
+            log.error("提交上传任务失败", e);
+            return ResponseUtil.error("上传失败: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * 查询上传任务进度
+     */
+    @GetMapping("/upload/{jobId}")
+    public ResponseUtil.Result<UploadJobStatus> getUploadJob(@PathVariable String jobId) {
+        UploadJobStatus status = uploadJobService.getStatus(jobId);
+        return status != null ? ResponseUtil.success(status) : ResponseUtil.notFound("上传任务不存在或已过期");
+    }
+    
+    /**
+     * 订阅上传任务进度（text/event-stream），任务结束后推送最终状态并关闭
+     * 事件名：progress（进行中）、succeeded / failed / cancelled（结束）；
+     * 以 SSE 返回的 Flux 不受 spring.mvc.async.request-timeout 限制，连接保持到任务结束
+     */
+    @GetMapping(value = "/upload/{jobId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<UploadJobStatus>> uploadJobEvents(@PathVariable String jobId) {
+        if (uploadJobService.getStatus(jobId) == null) {
+            return Flux.just(ServerSentEvent.<UploadJobStatus>builder()
+                    .event("error")
+                    .data(UploadJobStatus.builder().jobId(jobId).error("上传任务不存在或已过期").build())
+                    .build());
+        }
+        
+        // 客户端或写出线程跟不上时丢弃多余的计时，下一次计时仍会读到最新状态（含结束状态）
+        return Flux.interval(Duration.ZERO, Duration.ofMillis(uploadJobService.getProgressIntervalMillis()))
+                .onBackpressureDrop()
+                .<UploadJobStatus>handle((tick, sink) -> {
+                    UploadJobStatus status = uploadJobService.getStatus(jobId);
+                    if (status != null) {
+                        sink.next(status);
+                    } else {
+                        sink.complete();
+                    }
+                })
+                .takeUntil(status -> status.getState().isTerminal())
+                .map(status -> ServerSentEvent.<UploadJobStatus>builder()
+                        .event(status.getState().isTerminal() ? status.getState().name().toLowerCase(Locale.ROOT) : "progress")
+                        .data(status)
+                        .build());
+    }
+    
+    /**
+     * 取消上传任务，已导入的数据会被删除
+     */
+    @DeleteMapping("/upload/{jobId}")
+    public ResponseUtil.Result<UploadJobStatus> cancelUploadJob(@PathVariable String jobId) {
+        UploadJobStatus status = uploadJobService.cancel(jobId);
+        return status != null ? ResponseUtil.success(status) : ResponseUtil.notFound("上传任务不存在或已过期");
+    }
+    
     /**
      * 获取所有已上传的数据表
      */
@@ -49,4 +141,52 @@ public class DataManagementController {
     public ResponseUtil.Result<List<DataTable>> getTables() {
         return ResponseUtil.success(dataManagementService.getAllTables());
     }
+    
+    /**
+     * 按查询ID（智能分析结果中的 queryId）流式读取完整查询结果，
+     * 以列式 JSON 逐行写出：{"columns":[...],"rows":[[...]],"rowCount":n,"truncated":bool}；
+     * 响应超时为 data.query-guard.stream-timeout-seconds，不使用全局的 spring.mvc.async.request-timeout
+     */
+    @GetMapping(value = "/query/{queryId}/stream", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamQuery(@PathVariable String queryId, HttpServletRequest request) {
+        // 先完成校验，校验失败时还能返回错误状态码；开始写出后只能中断连接
+        String guardedSql;
+        try {
+            guardedSql = dataManagementService.prepareStreamQuery(queryId);
+        } catch (Exception e) {
+            log.warn("流式查询校验失败: {}", e.getMessage());
+            return errorBody(HttpStatus.BAD_REQUEST, ResponseUtil.error("查询失败: " + e.getMessage()));
+        }
+        if (guardedSql == null) {
+            return errorBody(HttpStatus.NOT_FOUND, ResponseUtil.notFound("查询不存在或已过期"));
+        }
+        
+        // StreamingResponseBody 按全局超时开始异步处理，开始前改为流式查询的超时
+        long timeout = dataManagementService.getStreamTimeoutMillis();
+        WebAsyncUtils.getAsyncManager(request).registerCallableInterceptor("streamQueryTimeout",
+                new CallableProcessingInterceptor() {
+                    @Override
+                    public <T> void beforeConcurrentHandling(NativeWebRequest webRequest, Callable<T> task) {
+                        ((AsyncWebRequest) webRequest).setTimeout(timeout);
+                    }
+                });
+        StreamingResponseBody body = out -> {
+            long rows = dataManagementService.streamQuery(guardedSql, out);
+            log.info("流式查询完成: {} 行", rows);
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+    
+    /**
+     * 声明的返回类型须为 ResponseEntity<StreamingResponseBody> 才会按流式写出，错误结果也以 StreamingResponseBody 写出 JSON
+     */
+    private ResponseEntity<StreamingResponseBody> errorBody(HttpStatus status, ResponseUtil.Result<?> result) {
+        byte[] json;
+        try {
+            json = objectMapper.writeValueAsBytes(result);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("错误结果序列化失败", e);
+        }
+        return ResponseEntity.status(status).contentType(MediaType.APPLICATION_JSON).body(out -> out.write(json));
+    }
 }
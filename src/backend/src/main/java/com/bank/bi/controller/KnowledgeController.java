@@ -5,6 +5,7 @@ import com.bank.bi.util.ResponseUtil;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
 
 import java.util.List;
 import java.util.Map;
@@ -31,16 +32,16 @@ public class KnowledgeController {
     }
 
     @PostMapping("/ask")
-    public ResponseUtil.Result<Map<String, Object>> ask(@RequestBody Map<String, String> request) {
+    public Mono<ResponseUtil.Result<Map<String, Object>>> ask(@RequestBody Map<String, String> request) {
         String query = request.get("query");
         if (query == null || query.trim().isEmpty()) {
-            return ResponseUtil.error("问题不能为空");
-        }
-        try {
-            return ResponseUtil.success(knowledgeService.ask(query));
-        } catch (Exception e) {
-            log.error("知识库问答失败", e);
-            return ResponseUtil.error("问答服务异常: " + e.getMessage());
+            return Mono.just(ResponseUtil.error("问题不能为空"));
         }
+        return knowledgeService.askAsync(query)
+                .map(ResponseUtil::success)
+                .onErrorResume(e -> {
+                    log.error("知识库问答失败", e);
+                    return Mono.just(ResponseUtil.error("问答服务异常: " + e.getMessage()));
+                });
     }
 }
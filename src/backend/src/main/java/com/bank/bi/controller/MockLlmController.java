@@ -0,0 +1,44 @@
+package com.bank.bi.controller;
+
+import com.bank.bi.model.dto.HiAgentRequest;
+import com.bank.bi.model.dto.HiAgentResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * 模拟LLM上游（仅 bench 压测环境）
+ * 按固定延迟返回OpenAI兼容的响应，压测时将 HIAGENT_API_URL 指向 http://localhost:8080/api/mock
+ */
+@Slf4j
+@Profile("bench")
+@RestController
+@RequestMapping("/mock")
+public class MockLlmController {
+    
+    @Value("${bench.llm-latency:3000}")
+    private long latencyMillis;
+    
+    @PostMapping("/v1/chat/completions")
+    public Mono<HiAgentResponse> completions(@RequestBody HiAgentRequest request) {
+        HiAgentResponse response = new HiAgentResponse();
+        response.setId("mock-" + System.nanoTime());
+        response.setObject("chat.completion");
+        response.setCreated(System.currentTimeMillis() / 1000);
+        response.setModel(request.getModel());
+        response.setChoices(List.of(new HiAgentResponse.Choice(0,
+                HiAgentRequest.Message.builder().role("assistant").content("模拟回复：本月存款稳定增长。").build(),
+                null, "stop")));
+        response.setUsage(new HiAgentResponse.Usage(100, 20, 120));
+        
+        return Mono.just(response).delayElement(Duration.ofMillis(latencyMillis));
+    }
+}
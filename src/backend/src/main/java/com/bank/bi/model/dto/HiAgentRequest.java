@@ -1,5 +1,6 @@
 package com.bank.bi.model.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -28,6 +29,21 @@ public class HiAgentRequest {
     
     private Boolean stream;
     
+    @JsonIgnore
+    private String module;  // 请求来源模块，用于按模块隔离并发，不发送给上游
+    
+    @JsonIgnore
+    @Builder.Default
+    private Priority priority = Priority.BACKGROUND;  // 排队优先级，不发送给上游
+    
+    /**
+     * 请求优先级：交互式问答优先于后台/批量分析
+     */
+    public enum Priority {
+        INTERACTIVE,
+        BACKGROUND
+    }
+    
     /**
      * 消息对象
      */
@@ -34,6 +34,8 @@ public class HiAgentResponse {
         private Integer index;
         private HiAgentRequest.Message message;
         
+        private HiAgentRequest.Message delta;  // 流式响应中的增量内容
+        
         @JsonProperty("finish_reason")
         private String finishReason;
     }
@@ -0,0 +1,51 @@
+package com.bank.bi.model.dto;
+
+import com.bank.bi.model.entity.data.DataTable;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 上传任务状态DTO
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadJobStatus {
+    
+    private String jobId;
+    
+    private String tableName;  // 数据表显示名
+    
+    private State state;
+    
+    private Long totalBytes;  // 文件大小
+    
+    private Long bytesRead;  // 已解析的字节数
+    
+    private Double percent;  // 完成百分比（按已解析字节估算）
+    
+    private Long rowsImported;  // 已写入的行数
+    
+    private Double rowsPerSecond;  // 平均导入速度
+    
+    private String error;  // 失败原因
+    
+    private DataTable table;  // 导入成功后的数据表
+    
+    private LocalDateTime createdTime;
+    
+    private LocalDateTime finishedTime;
+    
+    public enum State {
+        QUEUED, RUNNING, SUCCEEDED, FAILED, CANCELLED;
+        
+        public boolean isTerminal() {
+            return this == SUCCEEDED || this == FAILED || this == CANCELLED;
+        }
+    }
+}
@@ -11,7 +11,7 @@ import lombok.NoArgsConstructor;
  * 数据列元数据
  */
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
@@ -35,4 +35,16 @@ public class DataColumn {
     private String dataType; // 数据类型
     
     private String description;
+    
+    private Long distinctCount; // 不同值个数
+    
+    private Double nullRatio; // 空值比例
+    
+    @Column(length = 100)
+    private String minValue; // 最小值（文本形式）
+    
+    @Column(length = 100)
+    private String maxValue; // 最大值（文本形式）
+    
+    private Boolean indexed; // 是否已自动建索引
 }
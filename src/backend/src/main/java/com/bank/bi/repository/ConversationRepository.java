@@ -2,6 +2,9 @@ package com.bank.bi.repository;
 
 import com.bank.bi.model.entity.Conversation;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -27,4 +30,11 @@ public interface ConversationRepository extends JpaRepository<Conversation, Long
      * 根据用户ID和模块查找对话
      */
     List<Conversation> findByUserIdAndModuleOrderByStartedTimeDesc(Long userId, String module);
+    
+    /**
+     * 累加对话的消息数量
+     */
+    @Modifying
+    @Query("UPDATE Conversation c SET c.messageCount = c.messageCount + :delta WHERE c.conversationId = :conversationId")
+    int incrementMessageCount(@Param("conversationId") Long conversationId, @Param("delta") int delta);
 }
@@ -24,6 +24,11 @@ public interface MessageRepository extends JpaRepository<Message, Long> {
      */
     Page<Message> findByConversationIdOrderByCreatedTimeDesc(Long conversationId, Pageable pageable);
     
+    /**
+     * 根据对话ID查找最近的消息（按时间降序，不做 count 查询）
+     */
+    List<Message> findRecentByConversationIdOrderByCreatedTimeDesc(Long conversationId, Pageable pageable);
+    
     /**
      * 统计对话的消息数量
      */
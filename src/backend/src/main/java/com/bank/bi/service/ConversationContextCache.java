@@ -0,0 +1,71 @@
+package com.bank.bi.service;
+
+import com.bank.bi.config.HiAgentConfig;
+import com.bank.bi.model.dto.HiAgentRequest;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 对话上下文缓存
+ * 按对话保存最近 historySize 条消息的滚动窗口，同一对话的连续轮次无需再从数据库读取历史；
+ * 对话数超过 contextCacheSize 时淘汰最久未使用的对话
+ */
+@Component
+public class ConversationContextCache {
+    
+    private final int windowSize;
+    private final Map<Long, Deque<HiAgentRequest.Message>> contexts;
+    
+    public ConversationContextCache(HiAgentConfig hiAgentConfig) {
+        this.windowSize = hiAgentConfig.getHistorySize();
+        int capacity = hiAgentConfig.getContextCacheSize();
+        this.contexts = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Deque<HiAgentRequest.Message>> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+    
+    /**
+     * 获取对话的上下文窗口，未缓存时返回 null
+     */
+    public synchronized List<HiAgentRequest.Message> get(Long conversationId) {
+        Deque<HiAgentRequest.Message> window = contexts.get(conversationId);
+        return window != null ? new ArrayList<>(window) : null;
+    }
+    
+    /**
+     * 用从数据库加载的历史（按时间升序）初始化上下文窗口
+     */
+    public synchronized void put(Long conversationId, List<HiAgentRequest.Message> history) {
+        Deque<HiAgentRequest.Message> window = new ArrayDeque<>(windowSize);
+        int start = Math.max(0, history.size() - windowSize);
+        window.addAll(history.subList(start, history.size()));
+        contexts.put(conversationId, window);
+    }
+    
+    /**
+     * 向已缓存的上下文窗口追加一条消息，超出窗口时丢弃最早的消息
+     */
+    public synchronized void append(Long conversationId, HiAgentRequest.Message message) {
+        Deque<HiAgentRequest.Message> window = contexts.get(conversationId);
+        if (window == null) {
+            return;
+        }
+        window.addLast(message);
+        while (window.size() > windowSize) {
+            window.removeFirst();
+        }
+    }
+    
+    public synchronized void evict(Long conversationId) {
+        contexts.remove(conversationId);
+    }
+}
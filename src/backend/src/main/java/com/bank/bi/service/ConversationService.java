@@ -0,0 +1,115 @@
+package com.bank.bi.service;
+
+import com.bank.bi.model.entity.Conversation;
+import com.bank.bi.model.entity.Message;
+import com.bank.bi.repository.ConversationRepository;
+import com.bank.bi.repository.MessageRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * 对话持久化服务
+ * 每个方法是一个短事务，调用AI期间不持有数据库连接
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ConversationService {
+    
+    private final ConversationRepository conversationRepository;
+    private final MessageRepository messageRepository;
+    
+    /**
+     * 已开始的一轮对话
+     *
+     * @param conversation 所属对话
+     * @param userMessage  已保存的用户消息
+     */
+    public record StartedTurn(Conversation conversation, Message userMessage) {
+    }
+    
+    /**
+     * 开始一轮对话：获取或创建对话，并保存用户消息
+     */
+    @Transactional
+    public StartedTurn startTurn(String query, String module, Long conversationId, Long userId) {
+        Conversation conversation;
+        if (conversationId != null) {
+            conversation = conversationRepository.findById(conversationId)
+                    .orElseThrow(() -> new RuntimeException("对话不存在"));
+        } else {
+            conversation = createConversation(userId, module, query);
+        }
+        
+        Message userMessage = Message.builder()
+                .conversationId(conversation.getConversationId())
+                .type("user")
+                .content(query)
+                .createdTime(LocalDateTime.now())
+                .build();
+        messageRepository.save(userMessage);
+        
+        return new StartedTurn(conversation, userMessage);
+    }
+    
+    /**
+     * 撤销一轮没有得到回复的对话：删除用户消息，本轮新建的对话一并删除
+     */
+    @Transactional
+    public void abortTurn(Long conversationId, Long userMessageId, boolean newConversation) {
+        messageRepository.deleteById(userMessageId);
+        if (newConversation) {
+            conversationRepository.deleteById(conversationId);
+        }
+    }
+    
+    /**
+     * 结束一轮对话：保存AI回复并更新对话统计
+     */
+    @Transactional
+    public Message finishTurn(Long conversationId, String query, String aiResponse,
+                              String modelName, Integer tokensUsed, int responseTime) {
+        Message aiMessage = Message.builder()
+                .conversationId(conversationId)
+                .type("assistant")
+                .content(aiResponse)
+                .queryText(query)
+                .modelName(modelName)
+                .tokensUsed(tokensUsed)
+                .responseTime(responseTime)
+                .createdTime(LocalDateTime.now())
+                .build();
+        messageRepository.save(aiMessage);
+        
+        // 原子递增，避免并发轮次之间互相覆盖计数
+        conversationRepository.incrementMessageCount(conversationId, 2);
+        
+        return aiMessage;
+    }
+    
+    /**
+     * 创建新对话
+     */
+    private Conversation createConversation(Long userId, String module, String firstQuery) {
+        String title = firstQuery.length() > 50 
+                ? firstQuery.substring(0, 50) + "..." 
+                : firstQuery;
+        
+        Conversation conversation = Conversation.builder()
+                .userId(userId)
+                .sessionId(UUID.randomUUID().toString())
+                .module(module != null ? module : "deposit")
+                .title(title)
+                .status(1)
+                .messageCount(0)
+                .startedTime(LocalDateTime.now())
+                .build();
+        
+        return conversationRepository.save(conversation);
+    }
+}
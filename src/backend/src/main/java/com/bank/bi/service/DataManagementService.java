@@ -1,180 +1,492 @@
 package com.bank.bi.service;
 
 import cn.hutool.core.io.FileUtil;
-import cn.hutool.core.text.csv.CsvData;
-import cn.hutool.core.text.csv.CsvReader;
+import cn.hutool.core.text.csv.CsvParser;
+import cn.hutool.core.text.csv.CsvReadConfig;
 import cn.hutool.core.text.csv.CsvRow;
-import cn.hutool.core.text.csv.CsvUtil;
 import cn.hutool.core.util.IdUtil;
+import com.bank.bi.config.DataConfig;
 import com.bank.bi.model.entity.data.DataColumn;
 import com.bank.bi.model.entity.data.DataTable;
 import com.bank.bi.repository.data.DataColumnRepository;
 import com.bank.bi.repository.data.DataTableRepository;
+import com.bank.bi.service.data.CellTypeClassifier;
+import com.bank.bi.service.data.ColumnBatch;
+import com.bank.bi.service.data.ColumnStatisticsCollector;
+import com.bank.bi.service.data.ColumnarJsonWriter;
+import com.bank.bi.service.data.CsvCopyInputStream;
+import com.bank.bi.service.data.DatabaseProduct;
+import com.bank.bi.service.data.DataTableChangedEvent;
+import com.bank.bi.service.data.ImportProgress;
+import com.bank.bi.service.data.ParallelRowConverter;
+import com.bank.bi.service.data.ProgressInputStream;
+import com.bank.bi.service.data.QueryGuard;
+import com.bank.bi.service.data.QueryResultCache;
+import com.bank.bi.service.data.SavedQueryStore;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.postgresql.copy.CopyManager;
+import org.postgresql.core.BaseConnection;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.ColumnMapRowMapper;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class DataManagementService {
-
+    
+    /** 用于类型推断的样本行数 */
+    private static final int SAMPLE_SIZE = 1000;
+    /** 每批插入的行数 */
+    private static final int BATCH_SIZE = 5000;
+    /** SQL 标准中"语句被取消"的 SQLState（超时或主动取消） */
+    private static final String QUERY_CANCELED_STATE = "57014";
+    
     private final DataTableRepository dataTableRepository;
     private final DataColumnRepository dataColumnRepository;
     private final JdbcTemplate jdbcTemplate;
-
+    private final ApplicationEventPublisher eventPublisher;
+    private final QueryResultCache queryResultCache;
+    private final QueryGuard queryGuard;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final DataConfig dataConfig;
+    private final DatabaseProduct databaseProduct;
+    private final ColumnStatisticsCollector columnStatisticsCollector;
+    private final SavedQueryStore savedQueryStore;
+    private final ForkJoinPool uploadConvertPool;
+    
     /**
      * 上传并处理数据文件 (CSV)
      */
-    @Transactional
     public DataTable uploadData(MultipartFile file, String tableName) throws Exception {
-        // 1. 读取 CSV
-        CsvReader reader = CsvUtil.getReader();
-        CsvData data = reader.read(new BufferedReader(new InputStreamReader(file.getInputStream(), StandardCharsets.UTF_8)));
-        List<CsvRow> rows = data.getRows();
-
-        if (rows.isEmpty()) {
-            throw new RuntimeException("文件为空");
+        try (InputStream in = file.getInputStream()) {
+            return importCsv(in, tableName, ImportProgress.NONE);
         }
-
-        // 2. 解析表头
-        List<String> headers = data.getHeader();
-        if (headers == null || headers.isEmpty()) {
-            // 如果 Hutool 没自动解析 header，尝试取第一行
-            headers = rows.get(0).getRawList();
-            rows = rows.subList(1, rows.size());
+    }
+    
+    /**
+     * 流式导入 CSV：逐行解析，仅缓存类型推断所需的样本行，之后每 BATCH_SIZE 行提交一次批量插入，
+     * 内存占用与文件大小无关。
+     * 不在单个事务中执行：建表与每批插入各自提交，连接只在每批插入期间占用；
+     * 每批提交后回调进度并检查取消（抛出 CancellationException），失败或取消时删除已创建的表
+     */
+    public DataTable importCsv(InputStream in, String tableName, ImportProgress progress) throws Exception {
+        // 1. 读取 CSV（逐行解析）
+        try (CsvParser parser = openCsv(in)) {
+            
+            // 2~3. 解析表头，读取前 SAMPLE_SIZE 行推断数据类型
+            CsvSample sample = readSample(parser);
+            CellTypeClassifier.ColumnType[] types = inferColumnTypes(sample.headers().size(), sample.rows());
+            
+            // 4. 生成物理表名
+            String physicalTableName = "user_data_" + IdUtil.simpleUUID();
+            
+            // 5. 创建物理表（按数据库方言生成建表语句）
+            List<DataColumn> columns = createTable(physicalTableName, sample.headers(), types);
+            try {
+                return loadRows(parser, sample.rows(), physicalTableName, tableName, columns, types, progress);
+            } catch (Exception e) {
+                dropTableQuietly(physicalTableName);
+                throw e;
+            }
         }
-        
-        // 3. 推断数据类型
-        int colCount = headers.size();
-        boolean[] isInt = new boolean[colCount];
-        boolean[] isDouble = new boolean[colCount];
-        boolean[] isDate = new boolean[colCount];
-        
-        // 初始化标记
-        for(int i=0; i<colCount; i++) {
-            isInt[i] = true;
-            isDouble[i] = true;
-            isDate[i] = true;
+    }
+    
+    /**
+     * 导入已落盘的 CSV 文件：大文件在 PostgreSQL 上用 COPY FROM STDIN 载入；在 H2 上先按逐行导入的规则校验全部行，
+     * 通过后用 CSVREAD 整体载入。其他数据库、小文件或批量载入失败时逐行导入，各路径导入的数据一致
+     */
+    public DataTable importCsvFile(Path file, String tableName, ImportProgress progress) throws Exception {
+        DataConfig.Upload config = dataConfig.getUpload();
+        if (config.isBulkLoadEnabled() && Files.size(file) >= config.getBulkLoadMinBytes()) {
+            DataTable table = databaseProduct.isPostgres() ? copyLoad(file, tableName, progress)
+                    : databaseProduct.isH2() ? bulkLoad(file, tableName, progress)
+                    : null;
+            if (table != null) {
+                return table;
+            }
         }
-
-        // 采样前 1000 行进行类型推断
-        int sampleLimit = Math.min(rows.size(), 1000);
-        for (int i = 0; i < sampleLimit; i++) {
-            List<String> rowData = rows.get(i).getRawList();
-            for (int j = 0; j < colCount && j < rowData.size(); j++) {
-                String val = rowData.get(j);
-                if (val == null || val.trim().isEmpty()) continue;
-                
-                // 移除可能的引号和空格
-                val = val.trim().replaceAll("^\"|\"$", "");
+        try (InputStream in = new ProgressInputStream(Files.newInputStream(file), progress)) {
+            return importCsv(in, tableName, progress);
+        }
+    }
+    
+    /**
+     * PostgreSQL：COPY ... FROM STDIN，单次读取文件，由 CsvCopyInputStream 按逐行导入的规则解析、校验并重新编码为 CSV，
+     * 服务端在一条语句中写入全部行。COPY 被数据库拒绝时删除数据表并返回 null（改为逐行导入）；
+     * 取值无法按列类型转换或导入被取消时与逐行导入一样抛出异常
+     */
+    private DataTable copyLoad(Path file, String tableName, ImportProgress progress) throws Exception {
+        try (CsvParser parser = openCsv(new ProgressInputStream(Files.newInputStream(file), progress))) {
+            CsvSample sample = readSample(parser);
+            CellTypeClassifier.ColumnType[] types = inferColumnTypes(sample.headers().size(), sample.rows());
+            String physicalTableName = "user_data_" + IdUtil.simpleUUID();
+            List<DataColumn> columns = createTable(physicalTableName, sample.headers(), types);
+            try {
+                List<String> columnNames = columns.stream().map(DataColumn::getColumnName).toList();
+                ParallelRowConverter converter = new ParallelRowConverter(types,
+                        columns.stream().map(DataColumn::getDisplayName).toList(), uploadConvertPool);
+                CsvCopyInputStream in = new CsvCopyInputStream(parser, sample.rows(), columnNames, types,
+                        converter, BATCH_SIZE, progress);
+                String copySql = "COPY " + physicalTableName + " (" + String.join(", ", columnNames) +
+                        ") FROM STDIN WITH (FORMAT csv, HEADER true, NULL '')";
                 
-                if (isInt[j] && !val.matches("^-?\\d+$")) isInt[j] = false;
-                if (isDouble[j] && !val.matches("^-?\\d*\\.?\\d+$")) isDouble[j] = false;
-                // 简单日期匹配 YYYY-MM-DD
-                if (isDate[j] && !val.matches("^\\d{4}-\\d{2}-\\d{2}$")) isDate[j] = false;
+                long start = System.nanoTime();
+                Long rowCount;
+                try {
+                    rowCount = jdbcTemplate.execute((ConnectionCallback<Long>) con -> {
+                        CopyManager copyManager = new CopyManager(con.unwrap(BaseConnection.class));
+                        try {
+                            return copyManager.copyIn(copySql, in);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+                } catch (DataAccessException e) {
+                    log.warn("COPY 载入失败，改为逐行导入: {}", e.getMessage());
+                    dropTableQuietly(physicalTableName);
+                    return null;
+                }
+                if (rowCount == null || rowCount != in.getRowCount()) {
+                    log.warn("COPY 载入行数 {} 与解析行数 {} 不一致，改为逐行导入", rowCount, in.getRowCount());
+                    dropTableQuietly(physicalTableName);
+                    return null;
+                }
+                progress.onBatchCommitted(rowCount);
+                log.info("COPY 载入数据表{}: {} 行，跳过列数不匹配的行 {} 行，耗时 {} ms", physicalTableName, rowCount,
+                        in.getSkipped(), (System.nanoTime() - start) / 1_000_000);
+                return saveMetadata(physicalTableName, tableName, columns, rowCount);
+            } catch (Exception e) {
+                dropTableQuietly(physicalTableName);
+                throw e;
             }
         }
+    }
+    
+    /**
+     * 批量载入：类型推断与建表同逐行导入，数据由数据库直接从文件读取
+     * CSVREAD 对列数不足的行补 NULL、截断多余的列，写入 DECIMAL 时按列定义舍入，均不报错，
+     * 因此载入前先校验；需要逐行导入时返回 null，取值无法按列类型转换时与逐行导入一样抛出异常
+     */
+    private DataTable bulkLoad(Path file, String tableName, ImportProgress progress) throws Exception {
+        CsvSample sample;
+        try (CsvParser parser = openCsv(Files.newInputStream(file))) {
+            sample = readSample(parser);
+        }
+        CellTypeClassifier.ColumnType[] types = inferColumnTypes(sample.headers().size(), sample.rows());
+        long start = System.nanoTime();
+        long validRows = validateRows(file, sample.headers(), types, progress);
+        if (validRows < 0) {
+            log.info("文件中存在列数不匹配的行，改为逐行导入");
+            return null;
+        }
         
-        // 4. 生成物理表名
         String physicalTableName = "user_data_" + IdUtil.simpleUUID();
-
-        // 5. 创建物理表 (H2 Database)
-        StringBuilder createTableSql = new StringBuilder("CREATE TABLE " + physicalTableName + " (");
-        createTableSql.append("id IDENTITY PRIMARY KEY, ");
-        
-        List<DataColumn> columns = new ArrayList<>();
-        String[] finalTypes = new String[colCount];
-        
-        for (int i = 0; i < colCount; i++) {
-            String header = headers.get(i);
-            String safeColumnName = header.replaceAll("[^a-zA-Z0-9_]", "_");
-            if (safeColumnName.matches("^\\d.*")) {
-                safeColumnName = "col_" + safeColumnName;
+        List<DataColumn> columns = createTable(physicalTableName, sample.headers(), types);
+        try {
+            long rowCount;
+            try {
+                rowCount = csvRead(file, physicalTableName, columns);
+            } catch (DataAccessException e) {
+                log.warn("批量载入失败，改为逐行导入: {}", e.getMessage());
+                dropTableQuietly(physicalTableName);
+                return null;
             }
-            
-            // 确定最终类型
-            String dataType = "VARCHAR(1000)";
-            if (isInt[i]) dataType = "INT";
-            else if (isDouble[i]) dataType = "DOUBLE";
-            else if (isDate[i]) dataType = "DATE";
-            
-            finalTypes[i] = dataType;
-            createTableSql.append(safeColumnName).append(" ").append(dataType).append(", ");
-            
-            columns.add(DataColumn.builder()
-                    .columnName(safeColumnName)
-                    .displayName(header)
-                    .dataType(dataType.split("\\(")[0]) // 存入元数据时不带长度
-                    .build());
+            if (rowCount != validRows) {
+                log.warn("批量载入行数 {} 与校验行数 {} 不一致，改为逐行导入", rowCount, validRows);
+                dropTableQuietly(physicalTableName);
+                return null;
+            }
+            // H2 由数据库读取文件，载入期间只能在完成后响应取消
+            if (progress.isCancelled()) {
+                throw new CancellationException("导入已取消");
+            }
+            progress.onBytesRead(Files.size(file));
+            progress.onBatchCommitted(rowCount);
+            log.info("批量载入数据表{}: {} 行，耗时 {} ms", physicalTableName, rowCount,
+                    (System.nanoTime() - start) / 1_000_000);
+            return saveMetadata(physicalTableName, tableName, columns, rowCount);
+        } catch (Exception e) {
+            dropTableQuietly(physicalTableName);
+            throw e;
+        }
+    }
+    
+    /**
+     * 按逐行导入的规则解析并转换全部行（不写库），返回行数；存在列数不匹配的行时返回 -1，
+     * 取值无法按列类型转换（如小数位数超出 DECIMAL 定义、需要舍入）时抛出异常
+     */
+    private long validateRows(Path file, List<String> headers, CellTypeClassifier.ColumnType[] types,
+                              ImportProgress progress) throws IOException {
+        ParallelRowConverter converter = new ParallelRowConverter(types, headers, uploadConvertPool);
+        ColumnBatch buffer = new ColumnBatch(types, BATCH_SIZE);
+        List<List<String>> batch = new ArrayList<>(BATCH_SIZE);
+        long rowCount = 0;
+        try (CsvParser parser = openCsv(new ProgressInputStream(Files.newInputStream(file), progress))) {
+            parser.nextRow(); // 表头
+            CsvRow row;
+            while ((row = parser.nextRow()) != null) {
+                List<String> rowData = row.getRawList();
+                if (rowData.size() != headers.size()) {
+                    return -1;
+                }
+                batch.add(rowData);
+                rowCount++;
+                if (batch.size() >= BATCH_SIZE) {
+                    converter.convert(batch, buffer);
+                    batch.clear();
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            converter.convert(batch, buffer);
+        }
+        return rowCount;
+    }
+    
+    /**
+     * H2：INSERT ... SELECT ... FROM CSVREAD(...)，数据库在同一进程内直接读取文件；
+     * 以 C1..Cn 指定列名时表头也作为数据行返回，用 OFFSET 1 跳过
+     */
+    private long csvRead(Path file, String physicalTableName, List<DataColumn> columns) {
+        StringBuilder select = new StringBuilder();
+        StringBuilder csvColumns = new StringBuilder();
+        for (int i = 1; i <= columns.size(); i++) {
+            if (i > 1) {
+                select.append(", ");
+                csvColumns.append(',');
+            }
+            select.append("NULLIF(TRIM(C").append(i).append("), '')");
+            csvColumns.append('C').append(i);
+        }
+        String path = file.toAbsolutePath().toString().replace("'", "''");
+        String insertSql = "INSERT INTO " + physicalTableName + " (" +
+                columns.stream().map(DataColumn::getColumnName).collect(Collectors.joining(", ")) +
+                ") SELECT " + select + " FROM CSVREAD('" + path + "', '" + csvColumns + "', 'charset=UTF-8') OFFSET 1 ROWS";
+        return jdbcTemplate.update(insertSql);
+    }
+    
+    private static CsvParser openCsv(InputStream in) {
+        return new CsvParser(new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)),
+                CsvReadConfig.defaultConfig());
+    }
+    
+    /**
+     * 表头与前 SAMPLE_SIZE 行样本
+     */
+    private record CsvSample(List<String> headers, List<List<String>> rows) {
+    }
+    
+    private static CsvSample readSample(CsvParser parser) {
+        // 表头（第一行）
+        CsvRow headerRow = parser.nextRow();
+        if (headerRow == null) {
+            throw new RuntimeException("文件为空");
         }
         
-        createTableSql.setLength(createTableSql.length() - 2); // 去掉最后的逗号
-        createTableSql.append(")");
+        // 用于推断数据类型的样本行
+        List<List<String>> sampleRows = new ArrayList<>(SAMPLE_SIZE);
+        CsvRow row;
+        while (sampleRows.size() < SAMPLE_SIZE && (row = parser.nextRow()) != null) {
+            sampleRows.add(row.getRawList());
+        }
+        if (sampleRows.isEmpty()) {
+            throw new RuntimeException("文件为空");
+        }
+        return new CsvSample(headerRow.getRawList(), sampleRows);
+    }
+    
+    /**
+     * 插入数据并保存元数据：解析在当前线程顺序进行，每批取值按列类型并行转换到复用的列式缓冲区，
+     * 再按列类型绑定参数批量插入
+     */
+    private DataTable loadRows(CsvParser parser, List<List<String>> sampleRows, String physicalTableName,
+                               String tableName, List<DataColumn> columns, CellTypeClassifier.ColumnType[] types,
+                               ImportProgress progress) {
+        int colCount = columns.size();
+        ParallelRowConverter converter = new ParallelRowConverter(types,
+                columns.stream().map(DataColumn::getDisplayName).toList(), uploadConvertPool);
+        ColumnBatch buffer = new ColumnBatch(types, BATCH_SIZE);
+        CsvRow row;
         
-        log.info("执行建表语句: {}", createTableSql);
-        jdbcTemplate.execute(createTableSql.toString());
-
-        // 6. 插入数据
+        // 6. 插入数据：先插入样本行，再边解析边按批提交
         String insertSql = "INSERT INTO " + physicalTableName + " (" + 
                 columns.stream().map(DataColumn::getColumnName).collect(Collectors.joining(", ")) + 
                 ") VALUES (" + 
                 columns.stream().map(c -> "?").collect(Collectors.joining(", ")) + 
                 ")";
         
-        List<Object[]> batchArgs = new ArrayList<>();
-        for (CsvRow row : rows) {
-            List<String> rowData = row.getRawList();
-            if (rowData.size() == columns.size()) {
-                // 处理空值转换
-                Object[] args = new Object[colCount];
-                for (int j = 0; j < colCount; j++) {
-                    String val = rowData.get(j);
-                    if (val == null || val.trim().isEmpty()) {
-                        args[j] = null;
-                    } else {
-                        args[j] = val.trim().replaceAll("^\"|\"$", "");
-                    }
+        List<List<String>> batch = new ArrayList<>(BATCH_SIZE);
+        long rowCount = 0;
+        long skipped = 0;
+        Iterator<List<String>> samples = sampleRows.iterator();
+        while (true) {
+            List<String> rowData;
+            if (samples.hasNext()) {
+                rowData = samples.next();
+            } else if ((row = parser.nextRow()) != null) {
+                rowData = row.getRawList();
+            } else {
+                break;
+            }
+            
+            if (rowData.size() != colCount) {
+                skipped++;
+                continue;
+            }
+            batch.add(rowData);
+            rowCount++;
+            if (batch.size() >= BATCH_SIZE) {
+                converter.convert(batch, buffer);
+                jdbcTemplate.batchUpdate(insertSql, buffer);
+                batch.clear();
+                progress.onBatchCommitted(rowCount);
+                if (progress.isCancelled()) {
+                    throw new CancellationException("导入已取消");
                 }
-                batchArgs.add(args);
             }
         }
+        if (!batch.isEmpty()) {
+            converter.convert(batch, buffer);
+            jdbcTemplate.batchUpdate(insertSql, buffer);
+        }
+        progress.onBatchCommitted(rowCount);
+        log.info("导入数据表{}: {} 行，跳过列数不匹配的行 {} 行", physicalTableName, rowCount, skipped);
         
-        jdbcTemplate.batchUpdate(insertSql, batchArgs);
-
         // 7. 保存元数据
+        return saveMetadata(physicalTableName, tableName, columns, rowCount);
+    }
+    
+    /**
+     * 保存数据表与列元数据（单个短事务），通知依赖数据表的缓存失效，并在后台统计列、建索引
+     */
+    private DataTable saveMetadata(String physicalTableName, String tableName, List<DataColumn> columns, long rowCount) {
         DataTable dataTable = DataTable.builder()
                 .tableName(physicalTableName)
                 .displayName(tableName)
-                .rowCount((long) rows.size())
+                .rowCount(rowCount)
                 .createdTime(LocalDateTime.now())
                 .build();
         
-        DataTable savedTable = dataTableRepository.save(dataTable);
-        
-        for (DataColumn column : columns) {
-            column.setDataTable(savedTable);
-            dataColumnRepository.save(column);
-        }
+        DataTable savedTable = transactionTemplate.execute(status -> {
+            DataTable saved = dataTableRepository.save(dataTable);
+            for (DataColumn column : columns) {
+                column.setDataTable(saved);
+                dataColumnRepository.save(column);
+            }
+            return saved;
+        });
         
         // 重新加载带 ID 的 columns
         savedTable.setColumns(columns);
         
+        // 通知依赖数据表的缓存失效
+        eventPublisher.publishEvent(new DataTableChangedEvent(physicalTableName, DataTableChangedEvent.Change.CREATED));
+        
+        columnStatisticsCollector.collectAsync(savedTable, columns);
         return savedTable;
     }
-
+    
+    /**
+     * 根据样本行推断每列类型
+     */
+    private CellTypeClassifier.ColumnType[] inferColumnTypes(int colCount, List<List<String>> sampleRows) {
+        CellTypeClassifier.Inference[] inferences = new CellTypeClassifier.Inference[colCount];
+        for (int i = 0; i < colCount; i++) {
+            inferences[i] = new CellTypeClassifier.Inference();
+        }
+        for (List<String> rowData : sampleRows) {
+            for (int j = 0; j < colCount && j < rowData.size(); j++) {
+                inferences[j].accept(rowData.get(j));
+            }
+        }
+        
+        CellTypeClassifier.ColumnType[] types = new CellTypeClassifier.ColumnType[colCount];
+        for (int i = 0; i < colCount; i++) {
+            types[i] = inferences[i].result();
+        }
+        return types;
+    }
+    
+    /**
+     * 创建物理表，返回列元数据
+     */
+    private List<DataColumn> createTable(String physicalTableName, List<String> headers,
+                                         CellTypeClassifier.ColumnType[] types) {
+        StringBuilder createTableSql = new StringBuilder("CREATE TABLE " + physicalTableName + " (");
+        createTableSql.append(databaseProduct.identityColumn("id")).append(", ");
+        
+        List<DataColumn> columns = new ArrayList<>();
+        for (int i = 0; i < headers.size(); i++) {
+            String header = headers.get(i);
+            String safeColumnName = header.replaceAll("[^a-zA-Z0-9_]", "_");
+            if (safeColumnName.matches("^\\d.*")) {
+                safeColumnName = "col_" + safeColumnName;
+            }
+            
+            createTableSql.append(safeColumnName).append(" ").append(types[i].sqlType(databaseProduct)).append(", ");
+            
+            columns.add(DataColumn.builder()
+                    .columnName(safeColumnName)
+                    .displayName(header)
+                    .dataType(types[i].type().name()) // 存入元数据时不带长度
+                    .build());
+        }
+        
+        createTableSql.setLength(createTableSql.length() - 2); // 去掉最后的逗号
+        createTableSql.append(")");
+        
+        log.info("执行建表语句: {}", createTableSql);
+        jdbcTemplate.execute(createTableSql.toString());
+        return columns;
+    }
+    
+    private void dropTableQuietly(String physicalTableName) {
+        try {
+            jdbcTemplate.execute("DROP TABLE IF EXISTS " + physicalTableName);
+            log.info("导入未完成，已删除数据表{}", physicalTableName);
+        } catch (DataAccessException e) {
+            log.warn("删除数据表{}失败", physicalTableName, e);
+        }
+    }
+    
     /**
      * 获取所有数据表元数据
      */
@@ -186,17 +498,110 @@ public class DataManagementService {
      * 执行查询 SQL
      */
     public List<Map<String, Object>> executeQuery(String sql) {
-        // 安全检查：简单防止非 SELECT 语句
-        String trimmedSql = sql.trim().toUpperCase();
-        if (!trimmedSql.startsWith("SELECT") && !trimmedSql.startsWith("WITH")) {
-            throw new RuntimeException("仅支持 SELECT 查询语句");
-        }
+        return executeQuery(sql, statement -> { });
+    }
+    
+    /**
+     * 异步执行查询 SQL，订阅被取消时同时取消数据库中正在执行的语句
+     */
+    public Mono<List<Map<String, Object>>> executeQueryAsync(String sql) {
+        return Mono.defer(() -> {
+            AtomicReference<Statement> running = new AtomicReference<>();
+            return Mono.fromCallable(() -> executeQuery(sql, running::set))
+                    .subscribeOn(Schedulers.boundedElastic())
+                    .doOnCancel(() -> cancelQuietly(running.get()));
+        });
+    }
+    
+    private List<Map<String, Object>> executeQuery(String sql, Consumer<Statement> onStatement) {
+        // 安全检查：解析语法树，只允许只读查询上传数据表，并强制最外层行数上限
+        String guardedSql = queryGuard.prepare(sql);
         
-        // 限制返回行数，防止爆内存
-        if (!trimmedSql.contains("LIMIT")) {
-            sql += " LIMIT 100";
+        // 同一 SQL 在数据表未变更前复用查询结果
+        return queryResultCache.getOrLoad(guardedSql, () -> {
+            queryGuard.checkCost(guardedSql);
+            try {
+                return jdbcTemplate.query(con -> {
+                    PreparedStatement ps = con.prepareStatement(guardedSql);
+                    ps.setQueryTimeout(queryGuard.getQueryTimeoutSeconds());
+                    ps.setMaxRows(queryGuard.getMaxRows());
+                    onStatement.accept(ps);
+                    return ps;
+                }, new ColumnMapRowMapper());
+            } catch (DataAccessException e) {
+                if (isQueryTimeout(e)) {
+                    throw new RuntimeException("查询超时（超过" + queryGuard.getQueryTimeoutSeconds() + "秒），已取消执行");
+                }
+                throw e;
+            }
+        });
+    }
+    
+    /**
+     * 保存已成功执行的查询，返回查询ID；页面展示的结果受行数上限截断，可按查询ID流式读取完整结果
+     */
+    public String saveQuery(String sql) {
+        return savedQueryStore.save(sql);
+    }
+    
+    /**
+     * 按查询ID取出已保存的查询并重新校验（语法、访问范围、代价），返回强制了流式行数上限的 SQL；
+     * 查询不存在或已过期时返回 null
+     */
+    public String prepareStreamQuery(String queryId) {
+        String sql = savedQueryStore.get(queryId);
+        if (sql == null) {
+            return null;
+        }
+        String guardedSql = queryGuard.prepare(sql, queryGuard.getStreamMaxRows());
+        queryGuard.checkCost(guardedSql);
+        return guardedSql;
+    }
+    
+    /**
+     * 流式执行已校验的查询，按 fetchSize 分批读取并逐行写出，结果不在内存中保留
+     * （PostgreSQL 仅在事务内按 fetchSize 使用游标读取，因此开启只读事务）
+     */
+    @Transactional(readOnly = true)
+    public long streamQuery(String guardedSql, OutputStream out) throws IOException {
+        // 响应输出流由 Spring 负责关闭
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)) {
+            Long rowCount = jdbcTemplate.query(con -> {
+                PreparedStatement ps = con.prepareStatement(guardedSql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                ps.setQueryTimeout(queryGuard.getQueryTimeoutSeconds());
+                ps.setMaxRows(queryGuard.getStreamMaxRows());
+                ps.setFetchSize(queryGuard.getFetchSize());
+                return ps;
+            }, new ColumnarJsonWriter(generator, queryGuard.getStreamMaxRows()));
+            return rowCount != null ? rowCount : 0;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+    
+    /**
+     * 流式查询响应的超时（毫秒）
+     */
+    public long getStreamTimeoutMillis() {
+        return queryGuard.getStreamTimeoutSeconds() * 1000L;
+    }
+    
+    private static boolean isQueryTimeout(DataAccessException e) {
+        return e instanceof QueryTimeoutException
+                || (e.getMostSpecificCause() instanceof SQLException sqlException
+                        && QUERY_CANCELED_STATE.equals(sqlException.getSQLState()));
+    }
+    
+    private static void cancelQuietly(Statement statement) {
+        if (statement == null) {
+            return;
+        }
+        try {
+            statement.cancel();
+            log.info("查询已取消");
+        } catch (SQLException e) {
+            log.debug("取消查询失败", e);
         }
-        
-        return jdbcTemplate.queryForList(sql);
     }
 }
@@ -5,26 +5,38 @@ import com.bank.bi.model.dto.HiAgentRequest;
 import com.bank.bi.model.dto.HiAgentResponse;
 import com.bank.bi.model.entity.Conversation;
 import com.bank.bi.model.entity.Message;
-import com.bank.bi.model.entity.data.DataColumn;
-import com.bank.bi.model.entity.data.DataTable;
 import com.bank.bi.repository.ConversationRepository;
 import com.bank.bi.repository.MessageRepository;
+import com.bank.bi.service.ai.LlmAdmissionController;
+import com.bank.bi.service.ai.LlmResilience;
+import com.bank.bi.service.ai.LlmResponseCache;
+import com.bank.bi.service.ai.RequestFingerprint;
+import com.bank.bi.service.ai.SemanticAnswerCache;
+import com.bank.bi.service.ai.SingleFlight;
+import com.bank.bi.service.ai.SqlTemplateCache;
+import com.bank.bi.service.data.ResultSummarizer;
+import com.bank.bi.service.data.SchemaCatalog;
+import com.bank.bi.service.data.SchemaRetriever;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 import java.time.Duration;
-import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
 /**
  * HiAgent AI服务
@@ -34,71 +46,251 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class HiAgentService {
     
+    /** 智能数据分析请求所属模块 */
+    private static final String DATA_MODULE = "data";
+    
     private final WebClient hiAgentWebClient;
     private final HiAgentConfig hiAgentConfig;
+    private final ConversationService conversationService;
+    private final ConversationContextCache contextCache;
+    private final LlmResponseCache responseCache;
+    private final SemanticAnswerCache semanticCache;
+    private final SingleFlight singleFlight;
+    private final LlmResilience resilience;
+    private final LlmAdmissionController admission;
     private final ConversationRepository conversationRepository;
     private final MessageRepository messageRepository;
     private final DataManagementService dataManagementService;
+    private final SchemaCatalog schemaCatalog;
+    private final SchemaRetriever schemaRetriever;
+    private final SqlTemplateCache sqlTemplateCache;
+    private final ResultSummarizer resultSummarizer;
+    private final ObjectMapper objectMapper;
     
     /**
      * 调用HiAgent API
      */
     public HiAgentResponse chat(HiAgentRequest request) {
+        return chatAsync(request).block();
+    }
+    
+    /**
+     * 调用HiAgent API（非阻塞）
+     * 低 temperature 的相同请求直接返回缓存的响应；并发的相同请求合并为一次上游调用；
+     * 上游调用先经配额准入排队，再受熔断、按模块隔离和重试保护
+     */
+    public Mono<HiAgentResponse> chatAsync(HiAgentRequest request) {
+        return Mono.defer(() -> {
+            HiAgentResponse cached = responseCache.get(request);
+            if (cached != null) {
+                return Mono.just(cached);
+            }
+            return singleFlight.execute(RequestFingerprint.of(request), () -> admission.acquire(request)
+                    .then(resilience.execute(request, () -> callHiAgent(request)))
+                    .doOnNext(response -> responseCache.put(request, response))
+                    .onErrorMap(e -> {
+                        log.error("调用HiAgent API失败", e);
+                        return new RuntimeException("AI服务调用失败: " + e.getMessage());
+                    }));
+        });
+    }
+    
+    private Mono<HiAgentResponse> callHiAgent(HiAgentRequest request) {
+        return Mono.defer(() -> {
+                    log.info("调用HiAgent API, model: {}, messages: {}",
+                            request.getModel(), request.getMessages().size());
+                    
+                    return hiAgentWebClient
+                            .post()
+                            .uri("/v1/chat/completions")
+                            .bodyValue(request)
+                            .retrieve()
+                            .bodyToMono(HiAgentResponse.class)
+                            .timeout(Duration.ofMillis(hiAgentConfig.getTimeout()));
+                })
+                .switchIfEmpty(Mono.error(() -> new RuntimeException("响应为空")))
+                .doOnNext(response -> {
+                    if (response.getUsage() != null) {
+                        log.info("HiAgent响应成功, tokens: {}", response.getUsage().getTotalTokens());
+                    }
+                });
+    }
+    
+    /**
+     * 流式调用HiAgent API，逐段返回增量内容
+     */
+    public Flux<String> chatStream(HiAgentRequest request) {
+        request.setStream(true);
+        log.info("流式调用HiAgent API, model: {}, messages: {}",
+                request.getModel(), request.getMessages().size());
+        
+        return admission.acquire(request)
+                .thenMany(resilience.executeStream(request, () -> hiAgentWebClient
+                        .post()
+                        .uri("/v1/chat/completions")
+                        .accept(MediaType.TEXT_EVENT_STREAM)
+                        .bodyValue(request)
+                        .retrieve()
+                        .bodyToFlux(new ParameterizedTypeReference<ServerSentEvent<String>>() {})
+                        // 两个分片之间的最大等待时间（不含排队时间）
+                        .timeout(Duration.ofMillis(hiAgentConfig.getTimeout()))
+                        .mapNotNull(ServerSentEvent::data)
+                        .takeWhile(data -> !"[DONE]".equals(data.trim()))
+                        .mapNotNull(this::parseDelta)))
+                .doOnError(e -> log.error("流式调用HiAgent API失败", e));
+    }
+    
+    /**
+     * 解析流式分片中的增量文本
+     */
+    private String parseDelta(String data) {
         try {
-            log.info("调用HiAgent API, model: {}, messages: {}", 
-                    request.getModel(), request.getMessages().size());
-            
-            HiAgentResponse response = hiAgentWebClient
-                    .post()
-                    .uri("/v1/chat/completions")
-                    .bodyValue(request)
-                    .retrieve()
-                    .bodyToMono(HiAgentResponse.class)
-                    .timeout(Duration.ofMillis(hiAgentConfig.getTimeout()))
-                    .block();
-            
-            if (response != null && response.getUsage() != null) {
-                log.info("HiAgent响应成功, tokens: {}", response.getUsage().getTotalTokens());
+            HiAgentResponse chunk = objectMapper.readValue(data, HiAgentResponse.class);
+            if (chunk.getChoices() == null || chunk.getChoices().isEmpty()) {
+                return null;
             }
-            
-            return response;
-            
+            HiAgentRequest.Message delta = chunk.getChoices().get(0).getDelta();
+            if (delta == null || delta.getContent() == null || delta.getContent().isEmpty()) {
+                return null;
+            }
+            return delta.getContent();
         } catch (Exception e) {
-            log.error("调用HiAgent API失败", e);
-            throw new RuntimeException("AI服务调用失败: " + e.getMessage());
+            log.warn("无法解析流式分片: {}", data);
+            return null;
         }
     }
     
     /**
      * 多轮对话
+     * 分为三个阶段：保存用户消息（短事务）→ 调用AI（无事务）→ 保存回复和统计（短事务）
      */
-    @Transactional
     public Message multiRoundChat(String query, String module, Long conversationId, Long userId) {
+        return multiRoundChatAsync(query, module, conversationId, userId).block();
+    }
+    
+    /**
+     * 多轮对话（非阻塞）
+     * 数据库读写在 boundedElastic 线程上执行，等待AI回复期间不占用请求线程
+     */
+    public Mono<Message> multiRoundChatAsync(String query, String module, Long conversationId, Long userId) {
+        return Mono.fromCallable(() -> startTurn(query, module, conversationId, userId))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(turn -> {
+                    // 新对话的首个问题不依赖历史，可复用语义相近问题的答案
+                    String cachedAnswer = turn.newConversation()
+                            ? semanticCache.lookup(turn.conversation().getModule(), query)
+                            : null;
+                    if (cachedAnswer != null) {
+                        return Mono.fromCallable(() -> finishTurn(turn, cachedAnswer, 0))
+                                .subscribeOn(Schedulers.boundedElastic());
+                    }
+                    
+                    AtomicBoolean settled = new AtomicBoolean();
+                    return chatAsync(turn.request())
+                            .publishOn(Schedulers.boundedElastic())
+                            .map(response -> {
+                                String aiResponse = response.getChoices().get(0).getMessage().getContent();
+                                Integer tokensUsed = response.getUsage() != null
+                                        ? response.getUsage().getTotalTokens() : null;
+                                if (turn.newConversation()) {
+                                    semanticCache.put(turn.conversation().getModule(), query, aiResponse);
+                                }
+                                settled.set(true);
+                                return finishTurn(turn, aiResponse, tokensUsed);
+                            })
+                            .doOnError(e -> abandonTurnAsync(turn, "", settled))
+                            .doOnCancel(() -> abandonTurnAsync(turn, "", settled));
+                });
+    }
+    
+    /**
+     * 多轮对话（流式）
+     * 事件顺序：meta（对话ID） → delta（增量文本，多次） → done（消息ID），出错时为 error；
+     * 订阅时才保存用户消息，数据库读写在 boundedElastic 线程上执行
+     */
+    public Flux<ServerSentEvent<Map<String, Object>>> multiRoundChatStream(
+            String query, String module, Long conversationId, Long userId) {
+        return Mono.fromCallable(() -> startTurn(query, module, conversationId, userId))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMapMany(this::streamTurn)
+                .onErrorResume(e -> {
+                    log.error("流式对话失败", e);
+                    return Flux.just(sseEvent("error", Map.of("message", "AI服务异常: " + e.getMessage())));
+                });
+    }
+    
+    private Flux<ServerSentEvent<Map<String, Object>>> streamTurn(ChatTurn turn) {
+        // 增量在上游线程追加，断开连接时在其他线程读取
+        StringBuffer answer = new StringBuffer();
+        AtomicBoolean settled = new AtomicBoolean();
+        
+        Flux<ServerSentEvent<Map<String, Object>>> meta = Flux.just(sseEvent("meta",
+                Map.of("conversationId", turn.conversation().getConversationId())));
+        
+        Flux<ServerSentEvent<Map<String, Object>>> deltas = chatStream(turn.request())
+                .doOnNext(answer::append)
+                .map(delta -> sseEvent("delta", Map.of("content", delta)));
+        
+        // 流结束后保存完整的AI回复
+        Flux<ServerSentEvent<Map<String, Object>>> done = Mono
+                .fromCallable(() -> settled.compareAndSet(false, true)
+                        ? finishTurn(turn, answer.toString(), null) : null)
+                .subscribeOn(Schedulers.boundedElastic())
+                .map(aiMessage -> sseEvent("done", Map.of(
+                        "conversationId", aiMessage.getConversationId(),
+                        "messageId", aiMessage.getMessageId(),
+                        "responseTime", aiMessage.getResponseTime())))
+                .flux();
+        
+        return Flux.concat(meta, deltas, done)
+                .doOnError(e -> abandonTurnAsync(turn, answer.toString(), settled))
+                .doOnCancel(() -> abandonTurnAsync(turn, answer.toString(), settled));
+    }
+    
+    private static ServerSentEvent<Map<String, Object>> sseEvent(String name, Map<String, Object> data) {
+        return ServerSentEvent.<Map<String, Object>>builder()
+                .event(name)
+                .data(data)
+                .build();
+    }
+    
+    /**
+     * 一轮对话的上下文：所属对话、用户消息ID、发往HiAgent的请求、开始时间以及是否为新对话
+     */
+    private record ChatTurn(Conversation conversation, Long userMessageId, String query, HiAgentRequest request,
+                            long startTime, boolean newConversation) {
+    }
+    
+    /**
+     * 开始一轮对话：保存用户消息、构建带历史的请求
+     */
+    private ChatTurn startTurn(String query, String module, Long conversationId, Long userId) {
         long startTime = System.currentTimeMillis();
         
-        // 1. 获取或创建对话
-        Conversation conversation;
-        if (conversationId != null) {
-            conversation = conversationRepository.findById(conversationId)
-                    .orElseThrow(() -> new RuntimeException("对话不存在"));
-        } else {
-            conversation = createConversation(userId, module, query);
-        }
+        // 1. 获取或创建对话，保存用户消息
+        ConversationService.StartedTurn started = conversationService.startTurn(query, module, conversationId, userId);
+        Conversation conversation = started.conversation();
         
-        // 2. 保存用户消息
-        Message userMessage = Message.builder()
-                .conversationId(conversation.getConversationId())
-                .type("user")
+        // 2. 获取对话历史（优先使用内存中的上下文窗口）
+        Long id = conversation.getConversationId();
+        HiAgentRequest.Message userMessage = HiAgentRequest.Message.builder()
+                .role("user")
                 .content(query)
-                .createdTime(LocalDateTime.now())
                 .build();
-        messageRepository.save(userMessage);
-        
-        // 3. 获取对话历史
-        List<Message> history = messageRepository
-                .findByConversationIdOrderByCreatedTimeAsc(conversation.getConversationId());
+        List<HiAgentRequest.Message> history = contextCache.get(id);
+        if (history != null) {
+            contextCache.append(id, userMessage);
+            history.add(userMessage);
+            int overflow = history.size() - hiAgentConfig.getHistorySize();
+            if (overflow > 0) {
+                history = history.subList(overflow, history.size());
+            }
+        } else {
+            history = loadRecentHistory(id);
+            contextCache.put(id, history);
+        }
         
-        // 4. 构建HiAgent请求
+        // 3. 构建HiAgent请求
         List<HiAgentRequest.Message> messages = new ArrayList<>();
         
         // 系统提示词
@@ -108,15 +300,8 @@ public class HiAgentService {
                 .content(systemPrompt)
                 .build());
         
-        // 历史对话（最近10轮）
-        int historySize = history.size();
-        int startIndex = Math.max(0, historySize - 20);  // 最多取最近20条消息（10轮对话）
-        messages.addAll(history.subList(startIndex, historySize).stream()
-                .map(msg -> HiAgentRequest.Message.builder()
-                        .role(msg.getType())
-                        .content(msg.getContent())
-                        .build())
-                .collect(Collectors.toList()));
+        // 历史对话（最近 historySize 条，含本轮用户消息）
+        messages.addAll(history);
         
         HiAgentRequest request = HiAgentRequest.builder()
                 .model(hiAgentConfig.getModel())
@@ -124,52 +309,65 @@ public class HiAgentService {
                 .temperature(hiAgentConfig.getTemperature())
                 .maxTokens(hiAgentConfig.getMaxTokens())
                 .stream(false)
+                .module(conversation.getModule())
+                .priority(HiAgentRequest.Priority.INTERACTIVE)
                 .build();
         
-        // 5. 调用HiAgent
-        HiAgentResponse response = chat(request);
-        String aiResponse = response.getChoices().get(0).getMessage().getContent();
-        
-        // 6. 保存AI回复
-        long responseTime = System.currentTimeMillis() - startTime;
-        Message aiMessage = Message.builder()
-                .conversationId(conversation.getConversationId())
-                .type("assistant")
-                .content(aiResponse)
-                .queryText(query)
-                .modelName(hiAgentConfig.getModel())
-                .tokensUsed(response.getUsage().getTotalTokens())
-                .responseTime((int) responseTime)
-                .createdTime(LocalDateTime.now())
-                .build();
-        messageRepository.save(aiMessage);
-        
-        // 7. 更新对话统计
-        conversation.setMessageCount(conversation.getMessageCount() + 2);
-        conversationRepository.save(conversation);
-        
-        return aiMessage;
+        return new ChatTurn(conversation, started.userMessage().getMessageId(), query, request, startTime,
+                conversationId == null);
     }
     
     /**
-     * 创建新对话
+     * 从数据库加载最近的历史消息（只取尾部 historySize 条，按时间升序返回）
      */
-    private Conversation createConversation(Long userId, String module, String firstQuery) {
-        String title = firstQuery.length() > 50 
-                ? firstQuery.substring(0, 50) + "..." 
-                : firstQuery;
+    private List<HiAgentRequest.Message> loadRecentHistory(Long conversationId) {
+        List<Message> recent = messageRepository.findRecentByConversationIdOrderByCreatedTimeDesc(
+                conversationId, PageRequest.of(0, hiAgentConfig.getHistorySize()));
         
-        Conversation conversation = Conversation.builder()
-                .userId(userId)
-                .sessionId(UUID.randomUUID().toString())
-                .module(module != null ? module : "deposit")
-                .title(title)
-                .status(1)
-                .messageCount(0)
-                .startedTime(LocalDateTime.now())
-                .build();
-        
-        return conversationRepository.save(conversation);
+        List<HiAgentRequest.Message> history = new ArrayList<>(recent.size());
+        for (int i = recent.size() - 1; i >= 0; i--) {
+            Message msg = recent.get(i);
+            history.add(HiAgentRequest.Message.builder()
+                    .role(msg.getType())
+                    .content(msg.getContent())
+                    .build());
+        }
+        return history;
+    }
+    
+    /**
+     * 回复未完成（出错或客户端断开）时在后台收尾，与正常结束互斥、只执行一次：
+     * 已收到部分回复时保存为本轮回复；尚无回复时撤销本轮用户消息并清除上下文窗口，
+     * 避免下一轮请求中出现连续两条用户消息
+     */
+    private void abandonTurnAsync(ChatTurn turn, String partialAnswer, AtomicBoolean settled) {
+        if (!settled.compareAndSet(false, true)) {
+            return;
+        }
+        Long id = turn.conversation().getConversationId();
+        Mono.fromRunnable(() -> {
+                    if (!partialAnswer.isEmpty()) {
+                        finishTurn(turn, partialAnswer, null);
+                        return;
+                    }
+                    contextCache.evict(id);
+                    conversationService.abortTurn(id, turn.userMessageId(), turn.newConversation());
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .subscribe(null, e -> log.warn("对话{}未完成的轮次收尾失败", id, e));
+    }
+    
+    /**
+     * 结束一轮对话：保存AI回复并更新对话统计
+     */
+    private Message finishTurn(ChatTurn turn, String aiResponse, Integer tokensUsed) {
+        long responseTime = System.currentTimeMillis() - turn.startTime();
+        contextCache.append(turn.conversation().getConversationId(), HiAgentRequest.Message.builder()
+                .role("assistant")
+                .content(aiResponse)
+                .build());
+        return conversationService.finishTurn(turn.conversation().getConversationId(), turn.query(),
+                aiResponse, hiAgentConfig.getModel(), tokensUsed, (int) responseTime);
     }
     
     /**
@@ -215,123 +413,190 @@ public class HiAgentService {
     public List<Conversation> getUserConversations(Long userId) {
         return conversationRepository.findByUserIdOrderByStartedTimeDesc(userId);
     }
-
+    
     /**
      * 智能数据分析（Text-to-SQL）
      */
     public Map<String, Object> analyzeData(String query) {
-        Map<String, Object> result = new java.util.HashMap<>();
-        
+        return analyzeDataAsync(query).block();
+    }
+    
+    /**
+     * 智能数据分析（非阻塞）
+     */
+    public Mono<Map<String, Object>> analyzeDataAsync(String query) {
         // 1. 获取所有可用数据表 schema
-        List<DataTable> tables = dataManagementService.getAllTables();
-        
-        if (tables.isEmpty()) {
-            // Fallback to simulated data if no real tables uploaded
-            return analyzeDataSimulated(query);
+        return loadSchema()
+                .flatMap(schema -> schema.tables().isEmpty()
+                        // Fallback to simulated data if no real tables uploaded
+                        ? analyzeDataSimulated(query)
+                        : analyzeTables(query, schema));
+    }
+    
+    /**
+     * 智能数据分析（流式）
+     * SQL 执行完成后立即推送 sql、data 事件，再逐段推送分析文本（delta），最后为 done，出错时为 error；
+     * 用户无需等待第二次AI调用结束即可看到查询结果
+     */
+    public Flux<ServerSentEvent<Map<String, Object>>> analyzeDataStream(String query) {
+        return loadSchema()
+                .flatMapMany(schema -> schema.tables().isEmpty()
+                        ? analyzeDataSimulated(query).flatMapMany(result -> Flux.just(
+                                sseEvent("sql", Map.of("sql", result.get("sql"))),
+                                sseEvent("data", Map.of("data", result.get("data"))),
+                                sseEvent("delta", Map.of("content", result.get("analysis"))),
+                                sseEvent("done", Map.of())))
+                        : queryData(query, schema).flatMapMany(result -> Flux.concat(
+                                Flux.just(
+                                        sseEvent("sql", Map.of("sql", result.sql())),
+                                        sseEvent("data", Map.of("data", result.data(), "queryId", result.queryId()))),
+                                chatStream(buildAnalysisRequest(query, result))
+                                        .map(delta -> sseEvent("delta", Map.of("content", delta))),
+                                Flux.just(sseEvent("done", Map.of())))))
+                .onErrorResume(e -> {
+                    log.error("智能分析失败", e);
+                    return Flux.just(sseEvent("error", Map.of("message", "分析失败: " + e.getMessage())));
+                });
+    }
+    
+    /**
+     * AI生成的 SQL 及其查询结果（受行数上限截断），queryId 用于流式读取完整结果
+     */
+    private record SqlQueryResult(String sql, List<Map<String, Object>> data, String queryId) {
+    }
+    
+    /**
+     * 读取 Schema 目录快照（仅首次或数据表变更后需要访问数据库）
+     */
+    private Mono<SchemaCatalog.Snapshot> loadSchema() {
+        return Mono.fromCallable(schemaCatalog::current)
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+    
+    private Mono<Map<String, Object>> analyzeTables(String query, SchemaCatalog.Snapshot schema) {
+        return queryData(query, schema)
+                .flatMap(result -> chatAsync(buildAnalysisRequest(query, result)).map(analysisResponse -> {
+                    String analysis = analysisResponse.getChoices().get(0).getMessage().getContent();
+                    
+                    Map<String, Object> response = new java.util.HashMap<>();
+                    response.put("response", analysis);
+                    response.put("sql", result.sql());
+                    response.put("data", result.data());
+                    response.put("queryId", result.queryId());
+                    response.put("analysis", analysis);
+                    return response;
+                }))
+                .onErrorResume(e -> {
+                    log.error("智能分析失败", e);
+                    Map<String, Object> response = new java.util.HashMap<>();
+                    response.put("response", "分析失败: " + e.getMessage());
+                    response.put("error", e.getMessage());
+                    return Mono.just(response);
+                });
+    }
+    
+    /**
+     * 获取问题对应的 SQL（优先使用模板缓存，否则让 AI 生成）并执行
+     */
+    private Mono<SqlQueryResult> queryData(String query, SchemaCatalog.Snapshot schema) {
+        String cachedSql = sqlTemplateCache.lookup(query, schema.version());
+        if (cachedSql != null) {
+            return dataManagementService.executeQueryAsync(cachedSql)
+                    .map(data -> new SqlQueryResult(cachedSql, data, dataManagementService.saveQuery(cachedSql)))
+                    .doOnError(e -> sqlTemplateCache.evict(query));
         }
-        
-        try {
-            // 2. 构建 Prompt 让 AI 生成 SQL
-            String schemaDescription = buildSchemaDescription(tables);
-            String sqlPrompt = """
-                你是一个 SQL 专家。请根据以下数据库 Schema，为用户的自然语言问题生成一条可执行的 SQL 查询语句。
-                
-                数据库 Schema:
-                %s
-                
-                用户问题: %s
-                
-                要求:
-                1. 只返回 SQL 语句，不要包含 markdown 格式（如 ```sql ... ```），不要包含其他解释。
-                2. 使用 H2 Database 兼容的语法。
-                3. 如果问题无法用当前 Schema 回答，请返回 "无法生成 SQL"。
-                """.formatted(schemaDescription, query);
-                
-            HiAgentRequest sqlRequest = HiAgentRequest.builder()
-                    .model(hiAgentConfig.getModel())
-                    .messages(List.of(HiAgentRequest.Message.builder().role("user").content(sqlPrompt).build()))
-                    .temperature(0.1) // Low temperature for deterministic SQL
-                    .maxTokens(500)
-                    .stream(false)
-                    .build();
-            
-            HiAgentResponse sqlResponse = chat(sqlRequest);
-            String generatedSql = sqlResponse.getChoices().get(0).getMessage().getContent().trim();
-            
-            // 清理 SQL (移除可能的 markdown 标记)
-            generatedSql = generatedSql.replaceAll("```sql", "").replaceAll("```", "").trim();
-            
-            if (generatedSql.contains("无法生成 SQL")) {
-                throw new RuntimeException("AI 无法理解该问题或缺少相关数据表");
-            }
+        HiAgentRequest sqlRequest = buildSqlRequest(query, schema);
+        return generateSql(sqlRequest)
+                // 3. 执行 SQL（在 boundedElastic 上执行，请求取消时同时取消数据库查询）
+                .flatMap(generatedSql -> dataManagementService.executeQueryAsync(generatedSql)
+                        .map(data -> {
+                            sqlTemplateCache.put(query, generatedSql, schema.version());
+                            return new SqlQueryResult(generatedSql, data, dataManagementService.saveQuery(generatedSql));
+                        }))
+                // 生成的 SQL 无法使用时移除缓存的 AI 响应，下次重新生成，而不是在有效期内反复返回同一条错误 SQL
+                .doOnError(e -> responseCache.evict(sqlRequest));
+    }
+    
+    /**
+     * 构建让 AI 生成 SQL 的请求
+     */
+    private HiAgentRequest buildSqlRequest(String query, SchemaCatalog.Snapshot schema) {
+        // 2. 只取与问题相关的数据表构建 Prompt，让 AI 生成 SQL
+        String schemaDescription = schemaRetriever.select(query, schema).schemaPrompt();
+        String sqlPrompt = """
+            你是一个 SQL 专家。请根据以下数据库 Schema，为用户的自然语言问题生成一条可执行的 SQL 查询语句。
             
-            log.info("AI 生成 SQL: {}", generatedSql);
+            数据库 Schema:
+            %s
             
-            // 3. 执行 SQL
-            List<Map<String, Object>> data = dataManagementService.executeQuery(generatedSql);
+            用户问题: %s
             
-            // 4. 让 AI 分析查询结果
-            String analysisPrompt = """
-                你是一个严谨的数据分析师。请仅基于提供的【查询SQL】和【查询结果】回答用户的【问题】。
-                
-                用户问题: %s
-                查询SQL: %s
-                查询结果: %s
-                
-                回答要求：
-                1. 必须完全基于查询结果回答，严禁编造数据或使用外部知识进行臆测。
-                2. 如果查询结果为空，直接回答"根据当前数据未找到相关信息"，不要尝试解释原因或提供假设。
-                3. 如果SQL查询逻辑与问题不匹配，请指出可能的数据限制。
-                4. 回答要简洁明了，直接引用数据支持结论。
-                """.formatted(query, generatedSql, data.toString());
-                
-            HiAgentRequest analysisRequest = HiAgentRequest.builder()
-                    .model(hiAgentConfig.getModel())
-                    .messages(List.of(HiAgentRequest.Message.builder().role("user").content(analysisPrompt).build()))
-                    .temperature(0.1) // 降低温度以减少幻觉
-                    .maxTokens(1000)
-                    .stream(false)
-                    .build();
+            要求:
+            1. 只返回 SQL 语句，不要包含 markdown 格式（如 ```sql ... ```），不要包含其他解释。
+            2. 使用 H2 Database 兼容的语法。
+            3. 如果问题无法用当前 Schema 回答，请返回 "无法生成 SQL"。
+            """.formatted(schemaDescription, query);
+        
+        return HiAgentRequest.builder()
+                .model(hiAgentConfig.getModel())
+                .messages(List.of(HiAgentRequest.Message.builder().role("user").content(sqlPrompt).build()))
+                .temperature(0.1) // Low temperature for deterministic SQL
+                .maxTokens(500)
+                .stream(false)
+                .module(DATA_MODULE)
+                .build();
+    }
+    
+    /**
+     * 让 AI 生成 SQL
+     */
+    private Mono<String> generateSql(HiAgentRequest sqlRequest) {
+        return chatAsync(sqlRequest)
+                .map(sqlResponse -> {
+                    String generatedSql = sqlResponse.getChoices().get(0).getMessage().getContent().trim();
                     
-            HiAgentResponse analysisResponse = chat(analysisRequest);
-            String analysis = analysisResponse.getChoices().get(0).getMessage().getContent();
-            
-            result.put("response", analysis);
-            result.put("sql", generatedSql);
-            result.put("data", data);
-            result.put("analysis", analysis);
-            
-            return result;
-            
-        } catch (Exception e) {
-            log.error("智能分析失败", e);
-            result.put("response", "分析失败: " + e.getMessage());
-            result.put("error", e.getMessage());
-            return result;
-        }
+                    // 清理 SQL (移除可能的 markdown 标记)
+                    generatedSql = generatedSql.replaceAll("```sql", "").replaceAll("```", "").trim();
+                    
+                    if (generatedSql.contains("无法生成 SQL")) {
+                        throw new RuntimeException("AI 无法理解该问题或缺少相关数据表");
+                    }
+                    
+                    log.info("AI 生成 SQL: {}", generatedSql);
+                    return generatedSql;
+                });
     }
     
-    private String buildSchemaDescription(List<DataTable> tables) {
-        StringBuilder sb = new StringBuilder();
-        for (DataTable table : tables) {
-            sb.append("Table: ").append(table.getTableName())
-              .append(" (").append(table.getDisplayName()).append(")\n");
-            sb.append("Columns:\n");
-            for (DataColumn col : table.getColumns()) {
-                sb.append("  - ").append(col.getColumnName())
-                  .append(" (").append(col.getDataType()).append(")");
-                if (col.getDisplayName() != null) {
-                    sb.append(" : ").append(col.getDisplayName());
-                }
-                sb.append("\n");
-            }
-            sb.append("\n");
-        }
-        return sb.toString();
+    /**
+     * 4. 构建让 AI 分析查询结果的请求
+     */
+    private HiAgentRequest buildAnalysisRequest(String query, SqlQueryResult result) {
+        String analysisPrompt = """
+            你是一个严谨的数据分析师。请仅基于提供的【查询SQL】和【查询结果】回答用户的【问题】。
+            
+            用户问题: %s
+            查询SQL: %s
+            查询结果: %s
+            
+            回答要求：
+            1. 必须完全基于查询结果回答，严禁编造数据或使用外部知识进行臆测。
+            2. 如果查询结果为空，直接回答"根据当前数据未找到相关信息"，不要尝试解释原因或提供假设。
+            3. 如果SQL查询逻辑与问题不匹配，请指出可能的数据限制。
+            4. 回答要简洁明了，直接引用数据支持结论。
+            """.formatted(query, result.sql(), resultSummarizer.summarize(result.data()));
+        
+        return HiAgentRequest.builder()
+                .model(hiAgentConfig.getModel())
+                .messages(List.of(HiAgentRequest.Message.builder().role("user").content(analysisPrompt).build()))
+                .temperature(0.1) // 降低温度以减少幻觉
+                .maxTokens(1000)
+                .stream(false)
+                .module(DATA_MODULE)
+                .build();
     }
     
     // 保留旧的模拟方法作为 Fallback
-    private Map<String, Object> analyzeDataSimulated(String query) {
+    private Mono<Map<String, Object>> analyzeDataSimulated(String query) {
         java.util.Map<String, Object> result = new java.util.HashMap<>();
         
         // 1. 模拟 SQL 生成
@@ -362,7 +627,7 @@ public class HiAgentService {
             2. 引用数据支持你的结论。
             3. 如果有必要，指出数据的局限性或建议进一步的分析。
             """;
-            
+        
         String userContent = String.format("【问题】%s\n\n【查询SQL】%s\n\n【查询结果】%s", query, sql, data.toString());
         
         List<HiAgentRequest.Message> messages = new ArrayList<>();
@@ -375,24 +640,23 @@ public class HiAgentService {
                 .temperature(0.5)
                 .maxTokens(1000)
                 .stream(false)
+                .module(DATA_MODULE)
                 .build();
-                
-        String analysis = "无法生成分析结果";
-        try {
-            HiAgentResponse response = chat(request);
-            if (response != null && !response.getChoices().isEmpty()) {
-                analysis = response.getChoices().get(0).getMessage().getContent();
-            }
-        } catch (Exception e) {
-            log.error("AI分析失败", e);
-            analysis = "AI服务暂时无法响应，请稍后再试。";
-        }
-        
-        result.put("response", analysis);
-        result.put("sql", sql);
-        result.put("data", data);
-        result.put("analysis", analysis);
         
-        return result;
+        return chatAsync(request)
+                .map(response -> response.getChoices().isEmpty()
+                        ? "无法生成分析结果"
+                        : response.getChoices().get(0).getMessage().getContent())
+                .onErrorResume(e -> {
+                    log.error("AI分析失败", e);
+                    return Mono.just("AI服务暂时无法响应，请稍后再试。");
+                })
+                .map(analysis -> {
+                    result.put("response", analysis);
+                    result.put("sql", sql);
+                    result.put("data", data);
+                    result.put("analysis", analysis);
+                    return result;
+                });
     }
 }
@@ -3,9 +3,11 @@ package com.bank.bi.service;
 import com.bank.bi.config.HiAgentConfig;
 import com.bank.bi.model.dto.HiAgentRequest;
 import com.bank.bi.model.dto.HiAgentResponse;
+import com.bank.bi.service.ai.SemanticAnswerCache;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
 
 import java.util.*;
 
@@ -17,16 +19,32 @@ import java.util.*;
 @RequiredArgsConstructor
 public class KnowledgeService {
 
+    private static final String MODULE = "knowledge";
+
     private final HiAgentService hiAgentService;
     private final HiAgentConfig hiAgentConfig;
+    private final SemanticAnswerCache semanticCache;
 
     /**
      * 智能问答（RAG）
      */
     public Map<String, Object> ask(String query) {
+        return askAsync(query).block();
+    }
+
+    /**
+     * 智能问答（RAG，非阻塞）
+     */
+    public Mono<Map<String, Object>> askAsync(String query) {
         // 1. 检索相关文档 (Retrieve)
         List<Map<String, Object>> sources = search(query);
         
+        // 语义相近的问题直接复用已有答案
+        String cachedAnswer = semanticCache.lookup(MODULE, query);
+        if (cachedAnswer != null) {
+            return Mono.just(buildResult(cachedAnswer, sources));
+        }
+        
         // 2. 构建上下文 (Context)
         StringBuilder contextBuilder = new StringBuilder();
         if (sources.isEmpty()) {
@@ -59,22 +77,28 @@ public class KnowledgeService {
                 .temperature(0.3) // 知识库问答降低创造性
                 .maxTokens(1000)
                 .stream(false)
+                .module(MODULE)
+                .priority(HiAgentRequest.Priority.INTERACTIVE)
                 .build();
                 
-        String answer;
-        try {
-            HiAgentResponse response = hiAgentService.chat(request);
-            if (response != null && !response.getChoices().isEmpty()) {
-                answer = response.getChoices().get(0).getMessage().getContent();
-            } else {
-                answer = "AI服务暂时无法响应，请稍后再试。";
-            }
-        } catch (Exception e) {
-            log.error("AI问答失败", e);
-            answer = "抱歉，处理您的问题时出现错误。";
-        }
-        
-        // 4. 返回结果
+        return hiAgentService.chatAsync(request)
+                .map(response -> {
+                    if (response.getChoices().isEmpty()) {
+                        return "AI服务暂时无法响应，请稍后再试。";
+                    }
+                    String answer = response.getChoices().get(0).getMessage().getContent();
+                    semanticCache.put(MODULE, query, answer);
+                    return answer;
+                })
+                .onErrorResume(e -> {
+                    log.error("AI问答失败", e);
+                    return Mono.just("抱歉，处理您的问题时出现错误。");
+                })
+                // 4. 返回结果
+                .map(answer -> buildResult(answer, sources));
+    }
+
+    private Map<String, Object> buildResult(String answer, List<Map<String, Object>> sources) {
         Map<String, Object> result = new HashMap<>();
         result.put("answer", answer);
         result.put("sources", sources);
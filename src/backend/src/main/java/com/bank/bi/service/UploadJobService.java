@@ -0,0 +1,237 @@
+package com.bank.bi.service;
+
+import cn.hutool.core.util.IdUtil;
+import com.bank.bi.config.DataConfig;
+import com.bank.bi.model.dto.UploadJobStatus;
+import com.bank.bi.model.entity.data.DataTable;
+import com.bank.bi.service.data.ImportProgress;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 异步上传任务
+ * 上传文件先落盘到本地临时目录，导入在固定大小的工作线程池中执行，排队已满时直接拒绝；
+ * 任务记录已解析字节数与已写入行数，供轮询或 SSE 查询进度，运行中的任务在下一批提交后响应取消
+ */
+@Slf4j
+@Service
+public class UploadJobService {
+    
+    private final DataManagementService dataManagementService;
+    private final DataConfig.Upload config;
+    private final Path spoolDir;
+    private final ThreadPoolExecutor executor;
+    private final Map<String, UploadJob> jobs = new ConcurrentHashMap<>();
+    
+    public UploadJobService(DataManagementService dataManagementService, DataConfig dataConfig) throws IOException {
+        this.dataManagementService = dataManagementService;
+        this.config = dataConfig.getUpload();
+        this.spoolDir = Files.createDirectories(Path.of(config.getSpoolDir()));
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(config.getWorkerThreads(), config.getWorkerThreads(),
+                0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(config.getQueueCapacity()), r -> {
+            Thread thread = new Thread(r, "data-upload-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    /**
+     * 将上传文件落盘并提交导入任务，返回任务初始状态
+     */
+    public UploadJobStatus submit(MultipartFile file, String tableName) throws IOException {
+        purgeExpiredJobs();
+        
+        Path spoolFile = Files.createTempFile(spoolDir, "upload-", ".csv");
+        try {
+            file.transferTo(spoolFile);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(spoolFile);
+            throw e;
+        }
+        
+        UploadJob job = new UploadJob(IdUtil.simpleUUID(), tableName, spoolFile, Files.size(spoolFile));
+        jobs.put(job.id, job);
+        try {
+            job.future = executor.submit(() -> run(job));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.id);
+            deleteQuietly(spoolFile);
+            throw new RuntimeException("上传任务排队已满，请稍后再试");
+        }
+        log.info("上传任务{}已提交: {}，{} 字节", job.id, tableName, job.totalBytes);
+        return job.snapshot();
+    }
+    
+    /**
+     * 查询任务状态，任务不存在或已过期时返回 null
+     */
+    public UploadJobStatus getStatus(String jobId) {
+        UploadJob job = jobs.get(jobId);
+        return job != null ? job.snapshot() : null;
+    }
+    
+    /**
+     * 取消任务：排队中的任务直接取消，运行中的任务在下一批提交后停止并删除已导入的数据
+     * 任务不存在时返回 null
+     */
+    public UploadJobStatus cancel(String jobId) {
+        UploadJob job = jobs.get(jobId);
+        if (job == null) {
+            return null;
+        }
+        job.cancelRequested = true;
+        if (job.state.compareAndSet(UploadJobStatus.State.QUEUED, UploadJobStatus.State.CANCELLED)) {
+            job.finish(null);
+            if (job.future != null) {
+                job.future.cancel(false);
+            }
+            deleteQuietly(job.spoolFile);
+            log.info("上传任务{}在排队中被取消", jobId);
+        }
+        return job.snapshot();
+    }
+    
+    public long getProgressIntervalMillis() {
+        return config.getProgressIntervalMillis();
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+    
+    private void run(UploadJob job) {
+        if (!job.state.compareAndSet(UploadJobStatus.State.QUEUED, UploadJobStatus.State.RUNNING)) {
+            return;
+        }
+        job.startNanos = System.nanoTime();
+        try {
+            DataTable table = dataManagementService.importCsvFile(job.spoolFile, job.tableName, job);
+            job.table = table;
+            job.finish(null);
+            job.state.set(UploadJobStatus.State.SUCCEEDED);
+            log.info("上传任务{}完成: {} 行，{}", job.id, job.rowsImported.get(), table.getTableName());
+        } catch (CancellationException e) {
+            job.finish(null);
+            job.state.set(UploadJobStatus.State.CANCELLED);
+            log.info("上传任务{}已取消，已写入的 {} 行已删除", job.id, job.rowsImported.get());
+        } catch (Exception e) {
+            job.finish(e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+            job.state.set(UploadJobStatus.State.FAILED);
+            log.error("上传任务{}失败", job.id, e);
+        } finally {
+            deleteQuietly(job.spoolFile);
+        }
+    }
+    
+    /**
+     * 移除结束超过保留时间的任务
+     */
+    private void purgeExpiredJobs() {
+        LocalDateTime expireBefore = LocalDateTime.now().minusMinutes(config.getJobRetentionMinutes());
+        jobs.values().removeIf(job -> job.finishedTime != null && job.finishedTime.isBefore(expireBefore));
+    }
+    
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("删除上传临时文件失败: {}", file, e);
+        }
+    }
+    
+    private static class UploadJob implements ImportProgress {
+        private final String id;
+        private final String tableName;
+        private final Path spoolFile;
+        private final long totalBytes;
+        private final LocalDateTime createdTime = LocalDateTime.now();
+        private final AtomicReference<UploadJobStatus.State> state = new AtomicReference<>(UploadJobStatus.State.QUEUED);
+        private final AtomicLong bytesRead = new AtomicLong();
+        private final AtomicLong rowsImported = new AtomicLong();
+        private volatile Future<?> future;
+        private volatile boolean cancelRequested;
+        private volatile long startNanos;
+        private volatile long endNanos;
+        private volatile String error;
+        private volatile DataTable table;
+        private volatile LocalDateTime finishedTime;
+        
+        UploadJob(String id, String tableName, Path spoolFile, long totalBytes) {
+            this.id = id;
+            this.tableName = tableName;
+            this.spoolFile = spoolFile;
+            this.totalBytes = totalBytes;
+        }
+        
+        @Override
+        public void onBatchCommitted(long rows) {
+            rowsImported.set(rows);
+        }
+        
+        @Override
+        public void onBytesRead(long bytes) {
+            bytesRead.set(bytes);
+        }
+        
+        @Override
+        public boolean isCancelled() {
+            return cancelRequested;
+        }
+        
+        /** 在设置结束状态之前调用，保证读到结束状态时耗时与结束时间已就绪 */
+        void finish(String error) {
+            this.error = error;
+            this.endNanos = System.nanoTime();
+            this.finishedTime = LocalDateTime.now();
+        }
+        
+        UploadJobStatus snapshot() {
+            UploadJobStatus.State current = state.get();
+            long bytes = Math.min(bytesRead.get(), totalBytes);
+            // 字节读完后还需写入最后一批与元数据，成功前最多显示 99%
+            double percent = current == UploadJobStatus.State.SUCCEEDED ? 100
+                    : totalBytes == 0 ? 0 : Math.min(99.0, bytes * 100.0 / totalBytes);
+            double rowsPerSecond = 0;
+            if (startNanos != 0) {
+                long elapsed = (current.isTerminal() ? endNanos : System.nanoTime()) - startNanos;
+                if (elapsed > 0) {
+                    rowsPerSecond = rowsImported.get() * 1e9 / elapsed;
+                }
+            }
+            return UploadJobStatus.builder()
+                    .jobId(id)
+                    .tableName(tableName)
+                    .state(current)
+                    .totalBytes(totalBytes)
+                    .bytesRead(bytes)
+                    .percent(Math.round(percent * 10) / 10.0)
+                    .rowsImported(rowsImported.get())
+                    .rowsPerSecond((double) Math.round(rowsPerSecond))
+                    .error(error)
+                    .table(table)
+                    .createdTime(createdTime)
+                    .finishedTime(finishedTime)
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.bank.bi.service.ai;
+
+import com.bank.bi.config.HiAgentConfig;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+
+/**
+ * 本地哈希向量化
+ * 将规范化文本的单字和相邻双字特征哈希到固定维度（带符号哈希），再做 L2 归一化；
+ * 结果确定、无需模型文件，向量点积即余弦相似度
+ */
+@Component
+public class HashingEmbedder {
+    
+    private static final int BIGRAM_SALT = 0x5bd1e995;
+    
+    private final int dimensions;
+    
+    public HashingEmbedder(HiAgentConfig hiAgentConfig) {
+        this.dimensions = hiAgentConfig.getSemanticCache().getDimensions();
+    }
+    
+    public float[] embed(String text) {
+        float[] vector = new float[dimensions];
+        int[] codePoints = RequestFingerprint.normalize(text).toLowerCase(Locale.ROOT).codePoints()
+                .filter(Character::isLetterOrDigit)
+                .toArray();
+        
+        for (int i = 0; i < codePoints.length; i++) {
+            add(vector, mix(codePoints[i]), 1.0f);
+            if (i + 1 < codePoints.length) {
+                add(vector, mix(codePoints[i] * 31 + codePoints[i + 1] + BIGRAM_SALT), 1.5f);
+            }
+        }
+        
+        double norm = 0;
+        for (float v : vector) {
+            norm += v * v;
+        }
+        if (norm > 0) {
+            float scale = (float) (1.0 / Math.sqrt(norm));
+            for (int i = 0; i < vector.length; i++) {
+                vector[i] *= scale;
+            }
+        }
+        return vector;
+    }
+    
+    /**
+     * 两个归一化向量的余弦相似度
+     */
+    public static double similarity(float[] a, float[] b) {
+        double dot = 0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+        }
+        return dot;
+    }
+    
+    private void add(float[] vector, int hash, float weight) {
+        int index = Math.floorMod(hash, dimensions);
+        vector[index] += (hash & 0x40000000) == 0 ? weight : -weight;
+    }
+    
+    /**
+     * MurmurHash3 的 fmix32，打散相邻码点
+     */
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
@@ -0,0 +1,194 @@
+package com.bank.bi.service.ai;
+
+import com.bank.bi.config.HiAgentConfig;
+import com.bank.bi.model.dto.HiAgentRequest;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AI上游准入控制
+ * 用每分钟请求数、每分钟 token 数两个令牌桶控制发往上游的速率，保持在供应商配额之内；
+ * 配额不足时请求进入优先级队列，交互式问答先于后台分析放行，同优先级按到达顺序
+ */
+@Slf4j
+@Component
+public class LlmAdmissionController {
+    
+    private static final double TOKENS_PER_CHAR = 0.7;
+    
+    private final HiAgentConfig.RateLimit config;
+    private final TokenBucket requestBucket;
+    private final TokenBucket tokenBucket;
+    private final PriorityQueue<Ticket> waiting = new PriorityQueue<>(
+            Comparator.comparing(Ticket::priority).thenComparingLong(Ticket::sequence));
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "hiagent-admission");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Map<HiAgentRequest.Priority, Timer> waitTimers = new EnumMap<>(HiAgentRequest.Priority.class);
+    private final Counter rejected;
+    private long sequence;
+    private boolean drainScheduled;
+    
+    private record Ticket(HiAgentRequest.Priority priority, long sequence, int tokens,
+                          MonoSink<Void> sink, long enqueuedAt) {
+    }
+    
+    public LlmAdmissionController(HiAgentConfig hiAgentConfig, MeterRegistry meterRegistry) {
+        this.config = hiAgentConfig.getRateLimit();
+        this.requestBucket = new TokenBucket(config.getRequestsPerMinute());
+        this.tokenBucket = new TokenBucket(config.getTokensPerMinute());
+        for (HiAgentRequest.Priority priority : HiAgentRequest.Priority.values()) {
+            waitTimers.put(priority, Timer.builder("hiagent.admission.wait")
+                    .tag("priority", priority.name().toLowerCase())
+                    .register(meterRegistry));
+        }
+        this.rejected = Counter.builder("hiagent.admission.rejected").register(meterRegistry);
+        Gauge.builder("hiagent.admission.queue", this, LlmAdmissionController::queueSize).register(meterRegistry);
+    }
+    
+    /**
+     * 申请一次上游调用的配额，获准后完成；排队已满或超时则失败
+     */
+    public Mono<Void> acquire(HiAgentRequest request) {
+        if (!config.isEnabled()) {
+            return Mono.empty();
+        }
+        HiAgentRequest.Priority priority = request.getPriority() != null
+                ? request.getPriority() : HiAgentRequest.Priority.BACKGROUND;
+        int tokens = estimateTokens(request);
+        
+        return Mono.<Void>create(sink -> {
+                    Ticket ticket;
+                    synchronized (this) {
+                        if (waiting.size() >= config.getMaxQueueSize()) {
+                            rejected.increment();
+                            sink.error(new RuntimeException("AI请求排队已满，请稍后再试"));
+                            return;
+                        }
+                        ticket = new Ticket(priority, ++sequence, tokens, sink, System.nanoTime());
+                        waiting.add(ticket);
+                    }
+                    sink.onCancel(() -> {
+                        synchronized (this) {
+                            waiting.remove(ticket);
+                        }
+                    });
+                    drain();
+                })
+                .timeout(Duration.ofMillis(config.getMaxQueueWait()), Mono.error(() -> {
+                    rejected.increment();
+                    return new RuntimeException("AI请求排队超时，请稍后再试");
+                }));
+    }
+    
+    /**
+     * 按优先级放行队首请求，直到配额不足；配额不足时安排在令牌补足后再次放行
+     */
+    private void drain() {
+        List<Ticket> admitted = new ArrayList<>();
+        synchronized (this) {
+            long now = System.nanoTime();
+            requestBucket.refill(now);
+            tokenBucket.refill(now);
+            
+            while (!waiting.isEmpty()) {
+                Ticket head = waiting.peek();
+                double needTokens = Math.min(head.tokens(), tokenBucket.capacity);
+                if (requestBucket.available < 1 || tokenBucket.available < needTokens) {
+                    if (!drainScheduled) {
+                        long delay = Math.max(requestBucket.nanosUntil(1), tokenBucket.nanosUntil(needTokens));
+                        drainScheduled = true;
+                        scheduler.schedule(this::scheduledDrain, Math.max(delay, 1), TimeUnit.NANOSECONDS);
+                    }
+                    break;
+                }
+                requestBucket.available -= 1;
+                tokenBucket.available -= needTokens;
+                admitted.add(waiting.poll());
+            }
+        }
+        
+        long now = System.nanoTime();
+        for (Ticket ticket : admitted) {
+            waitTimers.get(ticket.priority()).record(now - ticket.enqueuedAt(), TimeUnit.NANOSECONDS);
+            ticket.sink().success();
+        }
+    }
+    
+    private void scheduledDrain() {
+        synchronized (this) {
+            drainScheduled = false;
+        }
+        drain();
+    }
+    
+    private synchronized int queueSize() {
+        return waiting.size();
+    }
+    
+    /**
+     * 估算本次调用消耗的 token：提示词按字符数估算，再加上 max_tokens 预留（供应商按此计入TPM）
+     */
+    private static int estimateTokens(HiAgentRequest request) {
+        long chars = 0;
+        for (HiAgentRequest.Message message : request.getMessages()) {
+            if (message.getContent() != null) {
+                chars += message.getContent().length();
+            }
+        }
+        int maxTokens = request.getMaxTokens() != null ? request.getMaxTokens() : 0;
+        return (int) Math.min(Integer.MAX_VALUE, (long) (chars * TOKENS_PER_CHAR) + maxTokens);
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+    
+    /**
+     * 令牌桶：容量为每分钟配额，按匀速补充
+     */
+    private static class TokenBucket {
+        private final double capacity;
+        private final double refillPerNano;
+        private double available;
+        private long lastRefill;
+        
+        TokenBucket(int perMinute) {
+            this.capacity = perMinute;
+            this.refillPerNano = perMinute / (double) TimeUnit.MINUTES.toNanos(1);
+            this.available = perMinute;
+            this.lastRefill = System.nanoTime();
+        }
+        
+        void refill(long now) {
+            available = Math.min(capacity, available + (now - lastRefill) * refillPerNano);
+            lastRefill = now;
+        }
+        
+        long nanosUntil(double amount) {
+            double missing = amount - available;
+            return missing <= 0 ? 0 : (long) Math.ceil(missing / refillPerNano);
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.bank.bi.service.ai;
+
+import com.bank.bi.config.HiAgentConfig;
+import com.bank.bi.model.dto.HiAgentRequest;
+import com.bank.bi.model.dto.HiAgentResponse;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.micrometer.tagged.TaggedBulkheadMetrics;
+import io.github.resilience4j.micrometer.tagged.TaggedCircuitBreakerMetrics;
+import io.github.resilience4j.reactor.bulkhead.operator.BulkheadOperator;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * AI上游弹性保护
+ * 1. 熔断：失败率或慢调用比例过高时快速失败，不再等待超时
+ * 2. 隔离：每个模块独立的并发上限，单个模块的突发流量不会占满上游
+ * 3. 重试：仅对低 temperature 的幂等请求，在网络错误、超时、429/5xx 时指数退避加抖动重试
+ * 熔断或隔离拒绝时，优先返回同一请求最近一次的成功响应，否则立即返回“服务繁忙”
+ * 流式调用同样经过熔断与隔离，但不重试（已输出的分片无法撤回），也没有可返回的缓存响应
+ */
+@Slf4j
+@Component
+public class LlmResilience {
+    
+    private static final String DEFAULT_MODULE = "default";
+    
+    private final HiAgentConfig.Resilience config;
+    private final LlmResponseCache responseCache;
+    private final CircuitBreaker circuitBreaker;
+    private final BulkheadRegistry bulkheadRegistry;
+    
+    public LlmResilience(HiAgentConfig hiAgentConfig, LlmResponseCache responseCache, MeterRegistry meterRegistry) {
+        this.config = hiAgentConfig.getResilience();
+        this.responseCache = responseCache;
+        
+        CircuitBreakerConfig circuitBreakerConfig = CircuitBreakerConfig.custom()
+                .failureRateThreshold(config.getFailureRateThreshold())
+                .slowCallRateThreshold(config.getSlowCallRateThreshold())
+                .slowCallDurationThreshold(Duration.ofMillis(config.getSlowCallDuration()))
+                .slidingWindowSize(config.getSlidingWindowSize())
+                .minimumNumberOfCalls(config.getMinimumNumberOfCalls())
+                .waitDurationInOpenState(Duration.ofMillis(config.getWaitDurationInOpenState()))
+                .permittedNumberOfCallsInHalfOpenState(config.getPermittedCallsInHalfOpenState())
+                .recordException(LlmResilience::isUpstreamFailure)
+                .build();
+        CircuitBreakerRegistry circuitBreakerRegistry = CircuitBreakerRegistry.of(circuitBreakerConfig);
+        this.circuitBreaker = circuitBreakerRegistry.circuitBreaker("hiagent");
+        this.circuitBreaker.getEventPublisher().onStateTransition(event ->
+                log.warn("HiAgent熔断器状态变更: {}", event.getStateTransition()));
+        
+        this.bulkheadRegistry = BulkheadRegistry.of(BulkheadConfig.custom()
+                .maxConcurrentCalls(config.getMaxConcurrentCalls())
+                .maxWaitDuration(Duration.ofMillis(config.getMaxWaitDuration()))
+                .build());
+        
+        TaggedCircuitBreakerMetrics.ofCircuitBreakerRegistry(circuitBreakerRegistry).bindTo(meterRegistry);
+        TaggedBulkheadMetrics.ofBulkheadRegistry(bulkheadRegistry).bindTo(meterRegistry);
+    }
+    
+    public Mono<HiAgentResponse> execute(HiAgentRequest request, Supplier<Mono<HiAgentResponse>> call) {
+        Mono<HiAgentResponse> guarded = Mono.defer(call)
+                .transformDeferred(CircuitBreakerOperator.of(circuitBreaker));
+        
+        if (isRetryable(request)) {
+            guarded = guarded.retryWhen(Retry.backoff(config.getMaxRetries(), Duration.ofMillis(config.getRetryBackoff()))
+                    .jitter(0.5)
+                    .filter(LlmResilience::isTransient)
+                    .doBeforeRetry(signal -> log.warn("HiAgent调用失败，第{}次重试: {}",
+                            signal.totalRetries() + 1, signal.failure().getMessage()))
+                    .onRetryExhaustedThrow((spec, signal) -> signal.failure()));
+        }
+        
+        return guarded
+                .transformDeferred(BulkheadOperator.of(bulkheadFor(request.getModule())))
+                .onErrorResume(e -> e instanceof CallNotPermittedException || e instanceof BulkheadFullException,
+                        e -> fallback(request, e));
+    }
+    
+    /**
+     * 流式调用：隔离的并发名额占用到流结束为止；熔断器以首个分片的等待时间判断慢调用，
+     * 长回答的总耗时不计为慢调用，流中途出错仍计为失败
+     */
+    public <T> Flux<T> executeStream(HiAgentRequest request, Supplier<Flux<T>> call) {
+        Flux<T> guarded = Flux.defer(() -> {
+            if (!circuitBreaker.tryAcquirePermission()) {
+                return Flux.error(CallNotPermittedException.createCallNotPermittedException(circuitBreaker));
+            }
+            long start = System.nanoTime();
+            AtomicLong firstItemNanos = new AtomicLong(-1);
+            return call.get()
+                    .doOnNext(item -> firstItemNanos.compareAndSet(-1, System.nanoTime() - start))
+                    .doOnComplete(() -> circuitBreaker.onSuccess(latency(start, firstItemNanos), TimeUnit.NANOSECONDS))
+                    .doOnError(e -> circuitBreaker.onError(latency(start, firstItemNanos), TimeUnit.NANOSECONDS, e))
+                    .doOnCancel(circuitBreaker::releasePermission);
+        });
+        
+        return guarded
+                .transformDeferred(BulkheadOperator.of(bulkheadFor(request.getModule())))
+                .onErrorMap(e -> e instanceof CallNotPermittedException || e instanceof BulkheadFullException,
+                        e -> new RuntimeException("AI服务繁忙，请稍后再试"));
+    }
+    
+    private static long latency(long start, AtomicLong firstItemNanos) {
+        long first = firstItemNanos.get();
+        return first >= 0 ? first : System.nanoTime() - start;
+    }
+    
+    private Mono<HiAgentResponse> fallback(HiAgentRequest request, Throwable e) {
+        HiAgentResponse stale = responseCache.getStale(request);
+        if (stale != null) {
+            log.warn("HiAgent不可用（{}），返回最近一次的缓存响应", e.getMessage());
+            return Mono.just(stale);
+        }
+        return Mono.error(new RuntimeException("AI服务繁忙，请稍后再试"));
+    }
+    
+    private Bulkhead bulkheadFor(String module) {
+        String name = module != null ? module : DEFAULT_MODULE;
+        Integer limit = config.getModuleConcurrentCalls().get(name);
+        if (limit == null) {
+            return bulkheadRegistry.bulkhead(name);
+        }
+        return bulkheadRegistry.bulkhead(name, BulkheadConfig.custom()
+                .maxConcurrentCalls(limit)
+                .maxWaitDuration(Duration.ofMillis(config.getMaxWaitDuration()))
+                .build());
+    }
+    
+    private boolean isRetryable(HiAgentRequest request) {
+        return config.getMaxRetries() > 0
+                && request.getTemperature() != null
+                && request.getTemperature() <= config.getRetryMaxTemperature();
+    }
+    
+    /**
+     * 可重试的临时性错误：网络异常、超时、429 和 5xx
+     */
+    private static boolean isTransient(Throwable e) {
+        if (e instanceof WebClientRequestException || e instanceof TimeoutException) {
+            return true;
+        }
+        if (e instanceof WebClientResponseException responseException) {
+            int status = responseException.getStatusCode().value();
+            return status == 429 || status >= 500;
+        }
+        return false;
+    }
+    
+    /**
+     * 计入熔断失败率的错误：除 429 以外的 4xx 是请求本身的问题，不代表上游故障
+     */
+    private static boolean isUpstreamFailure(Throwable e) {
+        if (e instanceof WebClientResponseException responseException) {
+            int status = responseException.getStatusCode().value();
+            return status == 429 || status >= 500;
+        }
+        return true;
+    }
+}
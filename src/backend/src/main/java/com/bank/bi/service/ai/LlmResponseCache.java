@@ -0,0 +1,96 @@
+package com.bank.bi.service.ai;
+
+import cn.hutool.cache.Cache;
+import cn.hutool.cache.CacheUtil;
+import com.bank.bi.config.HiAgentConfig;
+import com.bank.bi.model.dto.HiAgentRequest;
+import com.bank.bi.model.dto.HiAgentResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+/**
+ * AI响应精确匹配缓存
+ * 以请求指纹为键，按条数（LRU）和有效期淘汰；仅缓存 temperature 不超过阈值的请求。
+ * 另保留一份不过期的最近响应，仅在上游熔断时作为降级结果使用
+ */
+@Slf4j
+@Component
+public class LlmResponseCache {
+    
+    private final HiAgentConfig.Cache config;
+    private final Cache<String, HiAgentResponse> cache;
+    private final Cache<String, HiAgentResponse> staleCache;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter bypasses;
+    
+    public LlmResponseCache(HiAgentConfig hiAgentConfig, MeterRegistry meterRegistry) {
+        this.config = hiAgentConfig.getCache();
+        this.cache = CacheUtil.newLRUCache(config.getMaxEntries(), config.getTtlSeconds() * 1000);
+        this.staleCache = CacheUtil.newLRUCache(config.getMaxEntries());
+        this.hits = Counter.builder("hiagent.cache.requests").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("hiagent.cache.requests").tag("result", "miss").register(meterRegistry);
+        this.bypasses = Counter.builder("hiagent.cache.requests").tag("result", "bypass").register(meterRegistry);
+        Gauge.builder("hiagent.cache.size", cache, Cache::size).register(meterRegistry);
+    }
+    
+    /**
+     * 查询缓存，未命中或请求不可缓存时返回 null
+     */
+    public HiAgentResponse get(HiAgentRequest request) {
+        if (!isCacheable(request)) {
+            bypasses.increment();
+            return null;
+        }
+        // 不刷新访问时间，有效期从写入时起算
+        HiAgentResponse response = cache.get(RequestFingerprint.of(request), false);
+        if (response != null) {
+            hits.increment();
+            log.info("命中AI响应缓存");
+        } else {
+            misses.increment();
+        }
+        return response;
+    }
+    
+    public void put(HiAgentRequest request, HiAgentResponse response) {
+        if (!config.isEnabled() || response.getChoices() == null || response.getChoices().isEmpty()) {
+            return;
+        }
+        String key = RequestFingerprint.of(request);
+        staleCache.put(key, response);
+        if (isCacheable(request)) {
+            cache.put(key, response);
+        }
+    }
+    
+    /**
+     * 获取该请求最近一次成功的响应（不论是否过期、temperature高低），没有时返回 null
+     */
+    public HiAgentResponse getStale(HiAgentRequest request) {
+        return config.isEnabled() ? staleCache.get(RequestFingerprint.of(request), false) : null;
+    }
+    
+    /**
+     * 移除该请求的缓存响应（包括降级用的最近响应），如响应内容经验证无效时
+     */
+    public void evict(HiAgentRequest request) {
+        String key = RequestFingerprint.of(request);
+        cache.remove(key);
+        staleCache.remove(key);
+    }
+    
+    public void clear() {
+        cache.clear();
+        staleCache.clear();
+    }
+    
+    private boolean isCacheable(HiAgentRequest request) {
+        return config.isEnabled()
+                && request.getTemperature() != null
+                && request.getTemperature() <= config.getMaxTemperature();
+    }
+}
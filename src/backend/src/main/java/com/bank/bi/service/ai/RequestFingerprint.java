@@ -0,0 +1,40 @@
+package com.bank.bi.service.ai;
+
+import cn.hutool.core.convert.Convert;
+import cn.hutool.crypto.digest.DigestUtil;
+import com.bank.bi.model.dto.HiAgentRequest;
+
+import java.util.regex.Pattern;
+
+/**
+ * AI请求指纹
+ * 对模型、temperature、maxTokens 和规范化后的消息内容计算 SHA-256，内容相同的请求得到相同指纹
+ */
+public final class RequestFingerprint {
+    
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    
+    private RequestFingerprint() {
+    }
+    
+    public static String of(HiAgentRequest request) {
+        StringBuilder sb = new StringBuilder(256);
+        sb.append(request.getModel())
+          .append('|').append(request.getTemperature())
+          .append('|').append(request.getMaxTokens());
+        for (HiAgentRequest.Message message : request.getMessages()) {
+            sb.append('\n').append(message.getRole()).append(':').append(normalize(message.getContent()));
+        }
+        return DigestUtil.sha256Hex(sb.toString());
+    }
+    
+    /**
+     * 规范化文本：全角转半角（如“？”与“?”）、合并连续空白、去除首尾空白
+     */
+    public static String normalize(String content) {
+        if (content == null) {
+            return "";
+        }
+        return WHITESPACE.matcher(Convert.toDBC(content)).replaceAll(" ").trim();
+    }
+}
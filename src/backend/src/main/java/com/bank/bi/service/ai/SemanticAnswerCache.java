@@ -0,0 +1,146 @@
+package com.bank.bi.service.ai;
+
+import com.bank.bi.config.HiAgentConfig;
+import com.bank.bi.service.data.DataTableChangedEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 语义答案缓存
+ * 按模块保存问题向量和答案，新问题与已有问题的余弦相似度达到阈值时直接复用答案。
+ * 字符 n-gram 向量对单字差异不敏感（较长的问题改动一个字相似度仍高于阈值），因此问题中的限定词
+ * 必须完全一致才算命中：数字与中文数字（“3月”/“4月”、“三月”/“四月”）、时间指代（本月/上月/下月、今年/去年）、
+ * 比较口径（同比/环比）与变化方向（增长/下降、最高/最低）。
+ * 默认关闭（hiagent.semantic-cache.enabled），仅在问题措辞相对固定的场景按需开启。
+ * 每个模块的条目数有上限，线性扫描即可满足延迟要求，无需额外的近似索引结构。
+ */
+@Slf4j
+@Component
+public class SemanticAnswerCache {
+    
+    /** 答案不依赖上传数据表的模块 */
+    private static final String KNOWLEDGE_MODULE = "knowledge";
+    
+    /** 改变问题含义的限定词：数字、中文数字、时间指代、比较口径、变化方向 */
+    private static final Pattern QUALIFIER = Pattern.compile("\\d+(?:\\.\\d+)?|[零〇一二两三四五六七八九十百千万亿]+"
+            + "|[本上下当今去前明昨次]+(?:年|月|季度?|周|日|天)|同比|环比"
+            + "|增长|增加|上升|上涨|下降|减少|下跌|最高|最低|最多|最少|最大|最小");
+    
+    private final HiAgentConfig.SemanticCache config;
+    private final HashingEmbedder embedder;
+    private final Map<String, Deque<Entry>> modules = new ConcurrentHashMap<>();
+    private final Counter hits;
+    private final Counter misses;
+    
+    private record Entry(float[] vector, String qualifiers, String question, String answer, long expireAt) {
+    }
+    
+    public SemanticAnswerCache(HiAgentConfig hiAgentConfig, HashingEmbedder embedder, MeterRegistry meterRegistry) {
+        this.config = hiAgentConfig.getSemanticCache();
+        this.embedder = embedder;
+        this.hits = Counter.builder("hiagent.semantic-cache.requests").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("hiagent.semantic-cache.requests").tag("result", "miss").register(meterRegistry);
+    }
+    
+    /**
+     * 查找语义相近问题的答案，未命中时返回 null
+     */
+    public String lookup(String module, String question) {
+        if (!config.isEnabled()) {
+            return null;
+        }
+        Deque<Entry> entries = modules.get(moduleKey(module));
+        if (entries == null) {
+            misses.increment();
+            return null;
+        }
+        
+        float[] vector = embedder.embed(question);
+        String qualifiers = qualifiersOf(question);
+        long now = System.currentTimeMillis();
+        
+        Entry best = null;
+        double bestScore = config.getThreshold();
+        synchronized (entries) {
+            Iterator<Entry> it = entries.iterator();
+            while (it.hasNext()) {
+                Entry entry = it.next();
+                if (entry.expireAt() < now) {
+                    it.remove();
+                    continue;
+                }
+                if (!entry.qualifiers().equals(qualifiers)) {
+                    continue;
+                }
+                double score = HashingEmbedder.similarity(vector, entry.vector());
+                if (score >= bestScore) {
+                    best = entry;
+                    bestScore = score;
+                }
+            }
+        }
+        
+        if (best == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        log.info("命中语义缓存: module={}, similarity={}, 原问题: {}", module, String.format("%.3f", bestScore), best.question());
+        return best.answer();
+    }
+    
+    public void put(String module, String question, String answer) {
+        if (!config.isEnabled() || answer == null || answer.isBlank()) {
+            return;
+        }
+        Entry entry = new Entry(embedder.embed(question), qualifiersOf(question), question, answer,
+                System.currentTimeMillis() + config.getTtlSeconds() * 1000);
+        Deque<Entry> entries = modules.computeIfAbsent(moduleKey(module), k -> new ArrayDeque<>());
+        synchronized (entries) {
+            entries.addLast(entry);
+            while (entries.size() > config.getMaxEntriesPerModule()) {
+                entries.removeFirst();
+            }
+        }
+    }
+    
+    public void invalidate(String module) {
+        modules.remove(moduleKey(module));
+    }
+    
+    /**
+     * 数据表变更后，基于数据回答的模块缓存全部失效；列统计完成不改变数据，无需失效
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDataTableChanged(DataTableChangedEvent event) {
+        if (event.change() == DataTableChangedEvent.Change.STATISTICS) {
+            return;
+        }
+        modules.keySet().removeIf(module -> !KNOWLEDGE_MODULE.equals(module));
+        log.info("数据表{}已变更，清除语义缓存", event.tableName());
+    }
+    
+    private static String moduleKey(String module) {
+        return module != null ? module : "default";
+    }
+    
+    private static String qualifiersOf(String question) {
+        StringBuilder sb = new StringBuilder();
+        Matcher matcher = QUALIFIER.matcher(RequestFingerprint.normalize(question));
+        while (matcher.find()) {
+            sb.append(matcher.group()).append(',');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,45 @@
+package com.bank.bi.service.ai;
+
+import com.bank.bi.model.dto.HiAgentResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * AI请求合并（single-flight）
+ * 指纹相同的并发请求共享同一次上游调用，上游返回后所有等待方得到同一结果；
+ * 调用结束即移除，之后的请求重新发起调用
+ */
+@Component
+public class SingleFlight {
+    
+    private final Map<String, Mono<HiAgentResponse>> inFlight = new ConcurrentHashMap<>();
+    private final Counter leaders;
+    private final Counter coalesced;
+    
+    public SingleFlight(MeterRegistry meterRegistry) {
+        this.leaders = Counter.builder("hiagent.singleflight.calls").tag("role", "leader").register(meterRegistry);
+        this.coalesced = Counter.builder("hiagent.singleflight.calls").tag("role", "coalesced").register(meterRegistry);
+        Gauge.builder("hiagent.singleflight.inflight", inFlight, Map::size).register(meterRegistry);
+    }
+    
+    public Mono<HiAgentResponse> execute(String key, Supplier<Mono<HiAgentResponse>> call) {
+        return Mono.defer(() -> {
+            boolean[] leader = {false};
+            Mono<HiAgentResponse> shared = inFlight.computeIfAbsent(key, k -> {
+                leader[0] = true;
+                return Mono.defer(call)
+                        .doFinally(signal -> inFlight.remove(k))
+                        .cache();
+            });
+            (leader[0] ? leaders : coalesced).increment();
+            return shared;
+        });
+    }
+}
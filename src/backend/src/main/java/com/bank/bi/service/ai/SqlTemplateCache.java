@@ -0,0 +1,338 @@
+package com.bank.bi.service.ai;
+
+import cn.hutool.cache.Cache;
+import cn.hutool.cache.CacheUtil;
+import com.bank.bi.config.HiAgentConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 问题 → SQL 模板缓存
+ * 将问题中的数字（月份、金额等）和已知取值（网点名、产品名等，从历史生成的 SQL 中与列比较的字符串常量学习）
+ * 替换为占位符作为键，SQL 中对应位置记为参数；"3月存款" 与 "4月存款" 共用一个模板，命中时直接代入新值，
+ * 省去一次生成 SQL 的 AI 调用。字符串占位符按取值所属的列区分（{s:branch_name}），
+ * 不同列的取值不会共用模板；数字只在比较或日期运算中、且在 SQL 中只出现一次时才作为参数，
+ * 出现在日期常量中时不缓存（月份天数不同，代入后日期范围会出错）。
+ * Schema 目录版本变化时整体失效
+ */
+@Slf4j
+@Component
+public class SqlTemplateCache {
+    
+    private static final Pattern NUMBER = Pattern.compile("\\d+(?:\\.\\d+)?");
+    /** 0 和 1 在 SQL 中常作结构性常量（如日期中的 01 日、DATEADD 步长、LIMIT 1），不作为参数 */
+    private static final Pattern STRUCTURAL_NUMBER = Pattern.compile("0*[01]");
+    private static final Pattern SQL_STRING = Pattern.compile("'((?:[^']|'')*)'");
+    /** 列与字符串常量的等值比较，如 t.branch_name = '北京分行' */
+    private static final Pattern COLUMN_COMPARISON = Pattern.compile("([A-Za-z_][\\w.]*)\\s*(?:=|<>|!=)\\s*'((?:[^']|'')*)'");
+    /** 日期或时间常量，如 '2024-06-30'、'2024/6/1 00:00:00' */
+    private static final Pattern DATE_LITERAL = Pattern.compile("\\d{4}[-/]\\d{1,2}(?:[-/]\\d{1,2})?(?:[ T].*)?");
+    /**
+     * 可作为参数的数字位置（紧接其前的内容）：比较运算符右侧（含 BETWEEN ... AND）、
+     * 日期运算的步长（INTERVAL '3' MONTH、DATEADD('MONTH', -3, ...)）
+     */
+    private static final Pattern VALUE_PREFIX = Pattern.compile(
+            "(?i)(?:[=<>]|\\bBETWEEN|\\bBETWEEN\\s+\\S+\\s+AND|\\bINTERVAL\\s*'?"
+                    + "|\\b(?:DATEADD|TIMESTAMPADD)\\s*\\(\\s*'?\\w+'?\\s*,)\\s*-?\\s*$");
+    /** 比较运算符左侧，如 3 = MONTH(biz_date) */
+    private static final Pattern VALUE_SUFFIX = Pattern.compile("^\\s*[=<>!]");
+    /** 同一取值在不同列中出现过，无法确定所属列 */
+    private static final String AMBIGUOUS = "";
+    private static final int MIN_VALUE_LENGTH = 2;
+    
+    private final HiAgentConfig.SqlCache config;
+    private final Cache<String, SqlTemplate> cache;
+    /** 已知取值 → 所属列名（小写、不含表别名） */
+    private final Map<String, String> knownValues = new ConcurrentHashMap<>();
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter skipped;
+    private long version = -1;
+    
+    public SqlTemplateCache(HiAgentConfig hiAgentConfig, MeterRegistry meterRegistry) {
+        this.config = hiAgentConfig.getSqlCache();
+        this.cache = CacheUtil.newLRUCache(config.getMaxEntries(), config.getTtlSeconds() * 1000);
+        this.hits = Counter.builder("hiagent.sql.cache.requests").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("hiagent.sql.cache.requests").tag("result", "miss").register(meterRegistry);
+        this.skipped = Counter.builder("hiagent.sql.cache.skipped")
+                .description("无法安全参数化而未缓存的 SQL").register(meterRegistry);
+        Gauge.builder("hiagent.sql.cache.size", cache, Cache::size).register(meterRegistry);
+    }
+    
+    /**
+     * 查找问题对应的 SQL，未命中返回 null
+     */
+    public String lookup(String question, long catalogVersion) {
+        if (!config.isEnabled()) {
+            return null;
+        }
+        checkVersion(catalogVersion);
+        QuestionTemplate template = templatize(question);
+        SqlTemplate sqlTemplate = template != null ? cache.get(template.key(), false) : null;
+        if (sqlTemplate == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        log.info("命中SQL模板缓存: {}", template.key());
+        return sqlTemplate.render(template.params());
+    }
+    
+    /**
+     * 缓存成功执行的 SQL；问题中的参数无法与 SQL 一一对应时不缓存
+     */
+    public void put(String question, String sql, long catalogVersion) {
+        if (!config.isEnabled()) {
+            return;
+        }
+        checkVersion(catalogVersion);
+        learnValues(RequestFingerprint.normalize(question), sql);
+        
+        QuestionTemplate template = templatize(question);
+        SqlTemplate sqlTemplate = template != null ? SqlTemplate.compile(sql, template.params()) : null;
+        if (sqlTemplate == null) {
+            skipped.increment();
+            return;
+        }
+        cache.put(template.key(), sqlTemplate);
+    }
+    
+    /**
+     * 移除问题对应的模板（如代入新值后执行失败）
+     */
+    public void evict(String question) {
+        QuestionTemplate template = templatize(question);
+        if (template != null) {
+            cache.remove(template.key());
+        }
+    }
+    
+    public void clear() {
+        cache.clear();
+        knownValues.clear();
+    }
+    
+    private synchronized void checkVersion(long catalogVersion) {
+        if (version != catalogVersion) {
+            if (version >= 0) {
+                log.info("Schema目录版本变化({} -> {})，清空SQL模板缓存", version, catalogVersion);
+            }
+            clear();
+            version = catalogVersion;
+        }
+    }
+    
+    /**
+     * 记录 SQL 中与列等值比较、同时出现在问题里的字符串取值及其所属列
+     */
+    private void learnValues(String question, String sql) {
+        Matcher matcher = COLUMN_COMPARISON.matcher(sql);
+        while (matcher.find() && knownValues.size() < config.getMaxKnownValues()) {
+            String value = matcher.group(2).replace("''", "'");
+            if (value.length() >= MIN_VALUE_LENGTH && !NUMBER.matcher(value).matches() && question.contains(value)) {
+                knownValues.merge(value, columnName(matcher.group(1)),
+                        (learned, column) -> learned.equals(column) ? learned : AMBIGUOUS);
+            }
+        }
+    }
+    
+    /**
+     * 去掉表别名并转为小写，如 t.Branch_Name → branch_name
+     */
+    private static String columnName(String qualified) {
+        return qualified.substring(qualified.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+    }
+    
+    /**
+     * 将问题中的已知取值和数字替换为占位符；同一取值出现多次（无法确定对应关系）时返回 null
+     */
+    private QuestionTemplate templatize(String question) {
+        String normalized = RequestFingerprint.normalize(question);
+        
+        // 已知取值优先，较长的先匹配，互不重叠；所属列不确定的取值保留原文
+        List<Param> params = new ArrayList<>();
+        List<Map.Entry<String, String>> values = new ArrayList<>(knownValues.entrySet());
+        values.sort(Comparator.comparingInt((Map.Entry<String, String> e) -> e.getKey().length()).reversed());
+        boolean[] taken = new boolean[normalized.length()];
+        for (Map.Entry<String, String> entry : values) {
+            String value = entry.getKey();
+            int index = normalized.indexOf(value);
+            while (index >= 0) {
+                if (!isTaken(taken, index, index + value.length())) {
+                    markTaken(taken, index, index + value.length());
+                    if (!AMBIGUOUS.equals(entry.getValue())) {
+                        params.add(new Param(index, index + value.length(), value, entry.getValue()));
+                    }
+                }
+                index = normalized.indexOf(value, index + value.length());
+            }
+        }
+        Matcher matcher = NUMBER.matcher(normalized);
+        while (matcher.find()) {
+            if (!isTaken(taken, matcher.start(), matcher.end()) && !STRUCTURAL_NUMBER.matcher(matcher.group()).matches()) {
+                params.add(new Param(matcher.start(), matcher.end(), matcher.group(), null));
+            }
+        }
+        params.sort(Comparator.comparingInt(Param::start));
+        
+        Set<String> distinct = new HashSet<>();
+        StringBuilder key = new StringBuilder();
+        int last = 0;
+        for (Param param : params) {
+            if (!distinct.add(param.value())) {
+                return null;
+            }
+            key.append(normalized, last, param.start()).append(param.number() ? "{n}" : "{s:" + param.column() + "}");
+            last = param.end();
+        }
+        key.append(normalized.substring(last));
+        return new QuestionTemplate(key.toString(), params);
+    }
+    
+    private static boolean isTaken(boolean[] taken, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (taken[i]) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private static void markTaken(boolean[] taken, int start, int end) {
+        for (int i = start; i < end; i++) {
+            taken[i] = true;
+        }
+    }
+    
+    /**
+     * 问题中的一个参数
+     *
+     * @param column 字符串取值所属的列，数字参数为 null
+     */
+    private record Param(int start, int end, String value, String column) {
+        
+        boolean number() {
+            return column == null;
+        }
+    }
+    
+    private record QuestionTemplate(String key, List<Param> params) {
+    }
+    
+    /**
+     * SQL 模板：fragments 与参数交替拼接，fragments 比 slots 多一个
+     */
+    private record SqlTemplate(List<String> fragments, List<Slot> slots) {
+        
+        /**
+         * 在 SQL 中定位每个参数的出现位置；有参数找不到、位置重叠，或数字出现多次、出现在日期常量中、
+         * 不在比较或日期运算中时返回 null
+         */
+        static SqlTemplate compile(String sql, List<Param> params) {
+            List<int[]> dateLiterals = new ArrayList<>();
+            Matcher literal = SQL_STRING.matcher(sql);
+            while (literal.find()) {
+                if (DATE_LITERAL.matcher(literal.group(1)).matches()) {
+                    dateLiterals.add(new int[] {literal.start(1), literal.end(1)});
+                }
+            }
+            
+            List<Slot> slots = new ArrayList<>();
+            for (int i = 0; i < params.size(); i++) {
+                Param param = params.get(i);
+                int before = slots.size();
+                if (param.number()) {
+                    // 数字前后不能紧邻字母、数字、下划线或小数点，允许前导零（如 '2024-03-01' 中的 03）
+                    Matcher matcher = Pattern.compile("(?<![\\w.])0*" + Pattern.quote(param.value()) + "(?![\\w.])")
+                            .matcher(sql);
+                    if (!matcher.find()) {
+                        return null;
+                    }
+                    int start = matcher.start();
+                    int end = matcher.end();
+                    // "3月存款" 对应的 SQL 中另有 ROUND(x, 3)、LIMIT 3 时，无法确定哪一处来自问题
+                    if (matcher.find()) {
+                        return null;
+                    }
+                    // "6月" 对应 BETWEEN '2024-06-01' AND '2024-06-30' 时，换成 7 月会漏掉 31 日
+                    for (int[] range : dateLiterals) {
+                        if (start >= range[0] && end <= range[1]) {
+                            return null;
+                        }
+                    }
+                    if (!VALUE_PREFIX.matcher(sql.substring(0, start)).find()
+                            && !VALUE_SUFFIX.matcher(sql.substring(end)).find()) {
+                        return null;
+                    }
+                    slots.add(new Slot(start, end, i, end - start));
+                } else {
+                    // 字符串取值只替换与所属列等值比较的常量
+                    Matcher comparison = COLUMN_COMPARISON.matcher(sql);
+                    while (comparison.find()) {
+                        if (columnName(comparison.group(1)).equals(param.column())
+                                && comparison.group(2).replace("''", "'").equals(param.value())) {
+                            slots.add(new Slot(comparison.start(2), comparison.end(2), i, 0));
+                        }
+                    }
+                }
+                if (slots.size() == before) {
+                    return null;
+                }
+            }
+            
+            slots.sort(Comparator.comparingInt(Slot::start));
+            List<String> fragments = new ArrayList<>(slots.size() + 1);
+            int last = 0;
+            for (Slot slot : slots) {
+                if (slot.start() < last) {
+                    return null;
+                }
+                fragments.add(sql.substring(last, slot.start()));
+                last = slot.end();
+            }
+            fragments.add(sql.substring(last));
+            return new SqlTemplate(List.copyOf(fragments), List.copyOf(slots));
+        }
+        
+        String render(List<Param> params) {
+            StringBuilder sql = new StringBuilder(fragments.get(0));
+            for (int i = 0; i < slots.size(); i++) {
+                Slot slot = slots.get(i);
+                Param param = params.get(slot.param());
+                if (param.number()) {
+                    // 保持原有的前导零宽度（如月份 03）
+                    for (int pad = param.value().length(); pad < slot.width(); pad++) {
+                        sql.append('0');
+                    }
+                    sql.append(param.value());
+                } else {
+                    sql.append(param.value().replace("'", "''"));
+                }
+                sql.append(fragments.get(i + 1));
+            }
+            return sql.toString();
+        }
+    }
+    
+    /**
+     * SQL 中的一个参数位置
+     *
+     * @param width 数字参数原文的宽度（含前导零），字符串参数为 0
+     */
+    private record Slot(int start, int end, int param, int width) {
+    }
+}
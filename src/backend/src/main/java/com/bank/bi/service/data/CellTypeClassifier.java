@@ -0,0 +1,380 @@
+package com.bank.bi.service.data;
+
+import java.math.BigDecimal;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * CSV 单元格类型识别与转换
+ * 逐字符扫描判断取值可以是哪些类型，不使用正则、不创建中间对象；
+ * 按列累积候选类型（每个非空值都满足的类型），取其中最窄的作为列类型
+ */
+public final class CellTypeClassifier {
+
+    /** 按从窄到宽排列，列类型取候选中最靠前的一个 */
+    public enum CellType {
+        BOOLEAN, INT, BIGINT, DECIMAL, DOUBLE, DATE, TIMESTAMP, VARCHAR
+    }
+    
+    private static final int BOOLEAN = bit(CellType.BOOLEAN);
+    private static final int INT = bit(CellType.INT);
+    private static final int BIGINT = bit(CellType.BIGINT);
+    private static final int DECIMAL = bit(CellType.DECIMAL);
+    private static final int DOUBLE = bit(CellType.DOUBLE);
+    private static final int DATE = bit(CellType.DATE);
+    private static final int TIMESTAMP = bit(CellType.TIMESTAMP);
+    private static final int VARCHAR = bit(CellType.VARCHAR);
+    private static final int ALL = (1 << CellType.values().length) - 1;
+    
+    /** PostgreSQL 与 H2 都支持的 DECIMAL 最大精度 */
+    private static final int MAX_DECIMAL_PRECISION = 38;
+    /** DECIMAL 的最小精度，为样本之外更大的数值留出余量 */
+    private static final int MIN_DECIMAL_PRECISION = 18;
+    /**
+     * DECIMAL 的最小小数位数，为样本之外小数位更多的取值（如样本中为 3.85、之后出现 3.875）留出余量；
+     * 样本中小数位数超过该值且长短不一的列视为测量值，按 DOUBLE 存储
+     */
+    private static final int MIN_DECIMAL_SCALE = 4;
+    private static final int VARCHAR_LENGTH = 1000;
+    private static final int[] DAYS_IN_MONTH = {31, 29, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31};
+    private static final int[] NANOS_SCALE = {0, 100_000_000, 10_000_000, 1_000_000, 100_000, 10_000, 1_000, 100, 10, 1};
+    
+    private CellTypeClassifier() {
+    }
+    
+    /**
+     * 列类型，DECIMAL 带精度与小数位数
+     */
+    public record ColumnType(CellType type, int precision, int scale) {
+        
+        public static final ColumnType TEXT = new ColumnType(CellType.VARCHAR, 0, 0);
+        
+        /**
+         * 列类型名称，用于提示信息
+         */
+        public String sqlType() {
+            return switch (type) {
+                case DECIMAL -> "DECIMAL(" + precision + ", " + scale + ")";
+                case VARCHAR -> "VARCHAR(" + VARCHAR_LENGTH + ")";
+                default -> type.name();
+            };
+        }
+        
+        /**
+         * 建表使用的列类型，PostgreSQL 不支持单独的 DOUBLE
+         */
+        public String sqlType(DatabaseProduct database) {
+            if (type == CellType.DOUBLE && database.isPostgres()) {
+                return "DOUBLE PRECISION";
+            }
+            return sqlType();
+        }
+    }
+    
+    /**
+     * 单列的类型推断
+     */
+    public static class Inference {
+        private int candidates = ALL;
+        private int integerDigits;
+        private int scale;
+        private int minScale = Integer.MAX_VALUE;
+        private boolean seen;
+        
+        public void accept(String raw) {
+            String value = clean(raw);
+            if (value == null) {
+                return;
+            }
+            seen = true;
+            if (candidates != VARCHAR) {
+                candidates &= classify(value);
+            }
+        }
+        
+        public ColumnType result() {
+            // 全部为空的列无从判断，按文本处理
+            if (!seen) {
+                return ColumnType.TEXT;
+            }
+            for (CellType type : CellType.values()) {
+                if ((candidates & bit(type)) == 0) {
+                    continue;
+                }
+                if (type == CellType.DECIMAL) {
+                    if (scale > MIN_DECIMAL_SCALE && minScale < scale) {
+                        continue;
+                    }
+                    int columnScale = Math.max(scale, MIN_DECIMAL_SCALE);
+                    int precision = Math.max(MIN_DECIMAL_PRECISION, integerDigits + columnScale);
+                    if (precision > MAX_DECIMAL_PRECISION) {
+                        continue;
+                    }
+                    return new ColumnType(type, precision, columnScale);
+                }
+                return new ColumnType(type, 0, 0);
+            }
+            return ColumnType.TEXT;
+        }
+        
+        private int classify(String value) {
+            if (value.equalsIgnoreCase("true") || value.equalsIgnoreCase("false")) {
+                return BOOLEAN | VARCHAR;
+            }
+            int temporal = temporalCandidates(value);
+            if (temporal != 0) {
+                return temporal | VARCHAR;
+            }
+            return numberCandidates(value) | VARCHAR;
+        }
+        
+        /**
+         * 数值：可选符号、整数部分、可选小数部分、可选指数；带指数的只能是 DOUBLE
+         */
+        private int numberCandidates(String s) {
+            int n = s.length();
+            int i = 0;
+            if (s.charAt(0) == '-' || s.charAt(0) == '+') {
+                i++;
+            }
+            int intStart = i;
+            long value = 0;
+            boolean fitsLong = true;
+            while (i < n && isDigit(s.charAt(i))) {
+                int digit = s.charAt(i) - '0';
+                if (value > (Long.MAX_VALUE - digit) / 10) {
+                    fitsLong = false;
+                } else {
+                    value = value * 10 + digit;
+                }
+                i++;
+            }
+            int intDigits = i - intStart;
+            int fractionDigits = 0;
+            boolean point = false;
+            if (i < n && s.charAt(i) == '.') {
+                point = true;
+                int fractionStart = ++i;
+                while (i < n && isDigit(s.charAt(i))) {
+                    i++;
+                }
+                fractionDigits = i - fractionStart;
+            }
+            if (intDigits + fractionDigits == 0) {
+                return 0;
+            }
+            boolean exponent = false;
+            if (i < n && (s.charAt(i) == 'e' || s.charAt(i) == 'E')) {
+                i++;
+                if (i < n && (s.charAt(i) == '-' || s.charAt(i) == '+')) {
+                    i++;
+                }
+                int exponentStart = i;
+                while (i < n && isDigit(s.charAt(i))) {
+                    i++;
+                }
+                if (i == exponentStart) {
+                    return 0;
+                }
+                exponent = true;
+            }
+            if (i != n) {
+                return 0;
+            }
+            // 以 0 开头的多位整数（如编号 007、机构号 0101）转为数值会丢失前导零，按文本保留
+            if (intDigits > 1 && s.charAt(intStart) == '0') {
+                return 0;
+            }
+            if (exponent) {
+                return DOUBLE;
+            }
+            
+            int mask = DOUBLE;
+            if (intDigits + fractionDigits <= MAX_DECIMAL_PRECISION) {
+                mask |= DECIMAL;
+                integerDigits = Math.max(integerDigits, intDigits);
+                scale = Math.max(scale, fractionDigits);
+                minScale = Math.min(minScale, fractionDigits);
+            }
+            if (!point && fitsLong) {
+                mask |= BIGINT;
+                if (value <= Integer.MAX_VALUE) {
+                    mask |= INT;
+                }
+            }
+            return mask;
+        }
+    }
+    
+    /**
+     * 去掉首尾空白与首尾引号，空值返回 null；无需处理时返回原字符串
+     */
+    public static String clean(String raw) {
+        if (raw == null) {
+            return null;
+        }
+        String value = raw.trim();
+        int start = 0;
+        int end = value.length();
+        if (start < end && value.charAt(start) == '"') {
+            start++;
+        }
+        if (start < end && value.charAt(end - 1) == '"') {
+            end--;
+        }
+        if (start == end) {
+            return null;
+        }
+        return start == 0 && end == value.length() ? value : value.substring(start, end);
+    }
+    
+    /**
+     * 按列类型转换已 clean 的取值，无法转换时抛出 IllegalArgumentException
+     */
+    public static Object convert(ColumnType columnType, String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            switch (columnType.type()) {
+                case BOOLEAN:
+                    if (value.equalsIgnoreCase("true")) {
+                        return Boolean.TRUE;
+                    }
+                    if (value.equalsIgnoreCase("false")) {
+                        return Boolean.FALSE;
+                    }
+                    break;
+                case INT:
+                    return Integer.parseInt(value);
+                case BIGINT:
+                    return Long.parseLong(value);
+                case DECIMAL:
+                    BigDecimal decimal = new BigDecimal(value);
+                    // 小数位数或整数位数超出列定义时不做舍入，避免静默改变金额
+                    if (decimal.scale() > columnType.scale()) {
+                        decimal = decimal.stripTrailingZeros();
+                    }
+                    if (decimal.scale() <= columnType.scale()
+                            && decimal.precision() - decimal.scale() <= columnType.precision() - columnType.scale()) {
+                        return decimal;
+                    }
+                    break;
+                case DOUBLE:
+                    return Double.parseDouble(value);
+                case DATE:
+                    if (value.length() == 10 && isDate(value)) {
+                        return LocalDate.of(number(value, 0, 4), number(value, 5, 7), number(value, 8, 10));
+                    }
+                    break;
+                case TIMESTAMP:
+                    if (temporalCandidates(value) != 0) {
+                        return toTimestamp(value);
+                    }
+                    break;
+                default:
+                    return value;
+            }
+        } catch (NumberFormatException | ArithmeticException | DateTimeException e) {
+            // 统一为下面的异常
+        }
+        throw conversionError(columnType, value);
+    }
+    
+    public static IllegalArgumentException conversionError(ColumnType columnType, String value) {
+        return new IllegalArgumentException("值 '" + value + "' 无法转换为 " + columnType.sqlType());
+    }
+    
+    /**
+     * 日期 yyyy-MM-dd 可作为 DATE 或 TIMESTAMP；
+     * 日期时间 yyyy-MM-dd HH:mm[:ss[.SSSSSSSSS]]（分隔符也可为 T）只能作为 TIMESTAMP
+     */
+    private static int temporalCandidates(String s) {
+        int n = s.length();
+        if (n < 10 || !isDate(s)) {
+            return 0;
+        }
+        if (n == 10) {
+            return DATE | TIMESTAMP;
+        }
+        char separator = s.charAt(10);
+        if ((separator != ' ' && separator != 'T') || (n != 16 && n < 19)) {
+            return 0;
+        }
+        if (!isTwoDigits(s, 11) || s.charAt(13) != ':' || !isTwoDigits(s, 14)
+                || number(s, 11, 13) > 23 || number(s, 14, 16) > 59) {
+            return 0;
+        }
+        if (n == 16) {
+            return TIMESTAMP;
+        }
+        if (s.charAt(16) != ':' || !isTwoDigits(s, 17) || number(s, 17, 19) > 59) {
+            return 0;
+        }
+        if (n == 19) {
+            return TIMESTAMP;
+        }
+        if (s.charAt(19) != '.' || n == 20 || n > 29) {
+            return 0;
+        }
+        for (int i = 20; i < n; i++) {
+            if (!isDigit(s.charAt(i))) {
+                return 0;
+            }
+        }
+        return TIMESTAMP;
+    }
+    
+    private static boolean isDate(String s) {
+        if (s.charAt(4) != '-' || s.charAt(7) != '-' || !isTwoDigits(s, 5) || !isTwoDigits(s, 8)
+                || !isTwoDigits(s, 0) || !isTwoDigits(s, 2)) {
+            return false;
+        }
+        int year = number(s, 0, 4);
+        int month = number(s, 5, 7);
+        int day = number(s, 8, 10);
+        if (month < 1 || month > 12 || day < 1 || day > DAYS_IN_MONTH[month - 1]) {
+            return false;
+        }
+        boolean leap = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+        return month != 2 || day <= 28 || leap;
+    }
+    
+    private static LocalDateTime toTimestamp(String s) {
+        int year = number(s, 0, 4);
+        int month = number(s, 5, 7);
+        int day = number(s, 8, 10);
+        if (s.length() == 10) {
+            return LocalDate.of(year, month, day).atStartOfDay();
+        }
+        int hour = number(s, 11, 13);
+        int minute = number(s, 14, 16);
+        int second = s.length() >= 19 ? number(s, 17, 19) : 0;
+        int nanos = s.length() > 20 ? number(s, 20, s.length()) * NANOS_SCALE[s.length() - 20] : 0;
+        return LocalDateTime.of(year, month, day, hour, minute, second, nanos);
+    }
+    
+    private static boolean isTwoDigits(String s, int index) {
+        return isDigit(s.charAt(index)) && isDigit(s.charAt(index + 1));
+    }
+    
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+    
+    /**
+     * 解析已确认全为数字的片段
+     */
+    private static int number(String s, int from, int to) {
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            value = value * 10 + (s.charAt(i) - '0');
+        }
+        return value;
+    }
+    
+    private static int bit(CellType type) {
+        return 1 << type.ordinal();
+    }
+}
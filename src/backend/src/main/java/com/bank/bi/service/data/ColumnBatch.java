@@ -0,0 +1,135 @@
+package com.bank.bi.service.data;
+
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * 按列存放的一批待插入数据，按列类型绑定参数（setInt / setLong / setDouble / setDate ...）
+ * 整数、布尔、浮点存放在基本类型数组中，不产生装箱对象；缓冲区在整个导入过程中复用，
+ * 每批只覆盖写入，不再为每行分配 Object[]
+ */
+public class ColumnBatch implements BatchPreparedStatementSetter {
+    
+    private final CellTypeClassifier.ColumnType[] types;
+    private final int[] sqlTypes;
+    private final long[][] longs;
+    private final double[][] doubles;
+    private final Object[][] objects;
+    private final boolean[][] nulls;
+    private final int capacity;
+    private int size;
+    
+    public ColumnBatch(CellTypeClassifier.ColumnType[] types, int capacity) {
+        this.types = types;
+        this.capacity = capacity;
+        this.sqlTypes = new int[types.length];
+        this.longs = new long[types.length][];
+        this.doubles = new double[types.length][];
+        this.objects = new Object[types.length][];
+        this.nulls = new boolean[types.length][capacity];
+        for (int col = 0; col < types.length; col++) {
+            switch (types[col].type()) {
+                case BOOLEAN -> {
+                    sqlTypes[col] = Types.BOOLEAN;
+                    longs[col] = new long[capacity];
+                }
+                case INT -> {
+                    sqlTypes[col] = Types.INTEGER;
+                    longs[col] = new long[capacity];
+                }
+                case BIGINT -> {
+                    sqlTypes[col] = Types.BIGINT;
+                    longs[col] = new long[capacity];
+                }
+                case DOUBLE -> {
+                    sqlTypes[col] = Types.DOUBLE;
+                    doubles[col] = new double[capacity];
+                }
+                case DECIMAL -> {
+                    sqlTypes[col] = Types.DECIMAL;
+                    objects[col] = new Object[capacity];
+                }
+                case DATE -> {
+                    sqlTypes[col] = Types.DATE;
+                    objects[col] = new Object[capacity];
+                }
+                case TIMESTAMP -> {
+                    sqlTypes[col] = Types.TIMESTAMP;
+                    objects[col] = new Object[capacity];
+                }
+                default -> {
+                    sqlTypes[col] = Types.VARCHAR;
+                    objects[col] = new Object[capacity];
+                }
+            }
+        }
+    }
+    
+    /**
+     * 开始新的一批，之后写入 [0, size) 行
+     */
+    public void reset(int size) {
+        if (size > capacity) {
+            throw new IllegalArgumentException("批次行数超过缓冲区容量: " + size);
+        }
+        this.size = size;
+    }
+    
+    /**
+     * 写入一个已 clean 的取值，无法按列类型转换时抛出 IllegalArgumentException
+     * 不同线程可以并发写入不同的行
+     */
+    public void set(int row, int col, String value) {
+        if (value == null) {
+            nulls[col][row] = true;
+            return;
+        }
+        CellTypeClassifier.ColumnType type = types[col];
+        try {
+            switch (type.type()) {
+                case INT -> longs[col][row] = Integer.parseInt(value);
+                case BIGINT -> longs[col][row] = Long.parseLong(value);
+                case DOUBLE -> doubles[col][row] = Double.parseDouble(value);
+                case BOOLEAN -> longs[col][row] = (Boolean) CellTypeClassifier.convert(type, value) ? 1 : 0;
+                default -> objects[col][row] = CellTypeClassifier.convert(type, value);
+            }
+        } catch (NumberFormatException e) {
+            throw CellTypeClassifier.conversionError(type, value);
+        }
+        nulls[col][row] = false;
+    }
+    
+    @Override
+    public void setValues(PreparedStatement ps, int row) throws SQLException {
+        for (int col = 0; col < types.length; col++) {
+            int index = col + 1;
+            if (nulls[col][row]) {
+                ps.setNull(index, sqlTypes[col]);
+                continue;
+            }
+            switch (types[col].type()) {
+                case INT -> ps.setInt(index, (int) longs[col][row]);
+                case BIGINT -> ps.setLong(index, longs[col][row]);
+                case BOOLEAN -> ps.setBoolean(index, longs[col][row] != 0);
+                case DOUBLE -> ps.setDouble(index, doubles[col][row]);
+                case DECIMAL -> ps.setBigDecimal(index, (BigDecimal) objects[col][row]);
+                case DATE -> ps.setDate(index, Date.valueOf((LocalDate) objects[col][row]));
+                case TIMESTAMP -> ps.setTimestamp(index, Timestamp.valueOf((LocalDateTime) objects[col][row]));
+                default -> ps.setString(index, (String) objects[col][row]);
+            }
+        }
+    }
+    
+    @Override
+    public int getBatchSize() {
+        return size;
+    }
+}
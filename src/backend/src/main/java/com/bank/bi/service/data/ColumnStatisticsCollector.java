@@ -0,0 +1,224 @@
+package com.bank.bi.service.data;
+
+import com.bank.bi.config.DataConfig;
+import com.bank.bi.model.entity.data.DataColumn;
+import com.bank.bi.model.entity.data.DataTable;
+import com.bank.bi.repository.data.DataColumnRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 导入后的列统计与索引
+ * 数据表元数据保存后在后台单线程中执行，不延长导入耗时：一次全表聚合计算每列的不同值个数、空值比例，
+ * 以及数值与日期列的最小/最大值（大表的不同值个数按抽样估算），写回列元数据供 Text-to-SQL 提示词使用；
+ * 为日期列和中低基数的维度列自动建索引，最后执行 ANALYZE 更新优化器统计信息。
+ * 文本列不统计最小/最大值，避免客户姓名、证件号等明细取值进入发送给大模型的提示词
+ */
+@Slf4j
+@Component
+public class ColumnStatisticsCollector {
+    
+    /** 作为筛选、分组维度的列类型；数值度量（DECIMAL、DOUBLE）与布尔列不建索引 */
+    private static final Set<String> DIMENSION_TYPES = Set.of("VARCHAR", "INT", "BIGINT");
+    private static final Set<String> TEMPORAL_TYPES = Set.of("DATE", "TIMESTAMP");
+    /** 统计最小/最大值的列类型 */
+    private static final Set<String> RANGE_TYPES = Set.of("INT", "BIGINT", "DECIMAL", "DOUBLE", "DATE", "TIMESTAMP");
+    private static final int MAX_VALUE_LENGTH = 100;
+    
+    private final DataConfig.Statistics config;
+    private final JdbcTemplate jdbcTemplate;
+    private final DatabaseProduct databaseProduct;
+    private final DataColumnRepository dataColumnRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ThreadPoolExecutor executor;
+    
+    public ColumnStatisticsCollector(DataConfig dataConfig, JdbcTemplate jdbcTemplate, DatabaseProduct databaseProduct,
+                                     DataColumnRepository dataColumnRepository, ApplicationEventPublisher eventPublisher) {
+        this.config = dataConfig.getStatistics();
+        this.jdbcTemplate = jdbcTemplate;
+        this.databaseProduct = databaseProduct;
+        this.dataColumnRepository = dataColumnRepository;
+        this.eventPublisher = eventPublisher;
+        this.executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(config.getQueueCapacity()), r -> {
+            Thread thread = new Thread(r, "column-statistics");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    /**
+     * 在后台统计已保存数据表的列并建索引，完成后保存列元数据并发布 STATISTICS 变更事件；
+     * 统计失败或排队已满时只记录日志，不影响导入
+     */
+    public void collectAsync(DataTable table, List<DataColumn> columns) {
+        if (!config.isEnabled() || table.getRowCount() == null || table.getRowCount() == 0) {
+            return;
+        }
+        // 统计结果写入副本，不修改已返回给调用方的列对象
+        List<DataColumn> copies = columns.stream().map(column -> column.toBuilder().build()).toList();
+        try {
+            executor.execute(() -> collect(table.getTableName(), copies, table.getRowCount()));
+        } catch (RejectedExecutionException e) {
+            log.warn("列统计排队已满，数据表{}跳过统计", table.getTableName());
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+    
+    private void collect(String physicalTableName, List<DataColumn> columns, long rowCount) {
+        long start = System.nanoTime();
+        try {
+            computeStatistics(physicalTableName, columns, rowCount);
+            createIndexes(physicalTableName, columns, rowCount);
+            analyze(physicalTableName);
+            dataColumnRepository.saveAll(columns);
+            log.info("数据表{}统计完成，耗时 {} ms", physicalTableName, (System.nanoTime() - start) / 1_000_000);
+        } catch (RuntimeException e) {
+            log.warn("数据表{}统计失败", physicalTableName, e);
+            return;
+        }
+        eventPublisher.publishEvent(new DataTableChangedEvent(physicalTableName, DataTableChangedEvent.Change.STATISTICS));
+    }
+    
+    private void computeStatistics(String physicalTableName, List<DataColumn> columns, long rowCount) {
+        // 大表的不同值个数改为按抽样估算，全表聚合只做计数与最小/最大值
+        boolean sampled = rowCount > config.getDistinctSampleRows();
+        StringBuilder sql = new StringBuilder("SELECT ");
+        for (int i = 0; i < columns.size(); i++) {
+            DataColumn column = columns.get(i);
+            String name = column.getColumnName();
+            if (i > 0) {
+                sql.append(", ");
+            }
+            if (!sampled) {
+                sql.append("COUNT(DISTINCT ").append(name).append(") AS d").append(i).append(", ");
+            }
+            sql.append("COUNT(").append(name).append(") AS n").append(i);
+            if (RANGE_TYPES.contains(column.getDataType())) {
+                sql.append(", MIN(").append(name).append(") AS lo").append(i)
+                   .append(", MAX(").append(name).append(") AS hi").append(i);
+            }
+        }
+        sql.append(" FROM ").append(physicalTableName);
+        
+        // queryForMap 返回的 Map 按列名取值不区分大小写
+        Map<String, Object> result = jdbcTemplate.queryForMap(sql.toString());
+        long step = sampled ? sampleStep(rowCount) : 1;
+        for (int i = 0; i < columns.size(); i++) {
+            DataColumn column = columns.get(i);
+            long nonNull = toLong(result.get("n" + i));
+            column.setDistinctCount(sampled
+                    ? estimateDistinct(physicalTableName, column.getColumnName(), nonNull, step)
+                    : toLong(result.get("d" + i)));
+            column.setNullRatio((rowCount - nonNull) / (double) rowCount);
+            column.setMinValue(format(result.get("lo" + i)));
+            column.setMaxValue(format(result.get("hi" + i)));
+            column.setIndexed(false);
+        }
+    }
+    
+    /**
+     * 抽样间隔取质数，避免与按分行、日期等周期排列的数据同步而只取到其中几个值
+     */
+    private long sampleStep(long rowCount) {
+        long step = (rowCount + config.getDistinctSampleRows() - 1) / config.getDistinctSampleRows();
+        return BigInteger.valueOf(step).nextProbablePrime().longValue();
+    }
+    
+    /**
+     * 按自增 id 每 step 行取一行抽样，用 Haas-Stokes 估计（与 PostgreSQL ANALYZE 相同）推算不同值个数：
+     * n·d / (n - f1 + f1·n/N)，其中 n 为样本非空行数，d 为样本不同值个数，f1 为样本中只出现一次的值个数，N 为全表非空行数；
+     * 样本各值都重复出现时结果为 d，样本各值都只出现一次时结果为 N
+     */
+    private long estimateDistinct(String physicalTableName, String columnName, long nonNull, long step) {
+        Map<String, Object> sample = jdbcTemplate.queryForMap("SELECT COUNT(*) AS d, SUM(c) AS n, "
+                + "SUM(CASE WHEN c = 1 THEN 1 ELSE 0 END) AS f1 FROM (SELECT COUNT(*) AS c FROM " + physicalTableName
+                + " WHERE MOD(id, " + step + ") = 0 AND " + columnName + " IS NOT NULL GROUP BY " + columnName + ") s");
+        long d = toLong(sample.get("d"));
+        long n = toLong(sample.get("n"));
+        long f1 = toLong(sample.get("f1"));
+        if (n == 0) {
+            return 0;
+        }
+        double estimate = n * (double) d / (n - f1 + f1 * (double) n / nonNull);
+        return Math.max(d, Math.min(nonNull, Math.round(estimate)));
+    }
+    
+    /**
+     * 日期列优先，其次按不同值个数从少到多，每表不超过 maxIndexesPerTable 个；
+     * 行数较少的表全表扫描已足够快，不建索引
+     */
+    private void createIndexes(String physicalTableName, List<DataColumn> columns, long rowCount) {
+        if (rowCount < config.getIndexMinRows()) {
+            return;
+        }
+        long maxDistinct = (long) (rowCount * config.getIndexMaxDistinctRatio());
+        List<DataColumn> candidates = new ArrayList<>();
+        for (DataColumn column : columns) {
+            long distinct = column.getDistinctCount() != null ? column.getDistinctCount() : 0;
+            if (distinct < 2) {
+                continue;
+            }
+            if (TEMPORAL_TYPES.contains(column.getDataType())
+                    || (DIMENSION_TYPES.contains(column.getDataType()) && distinct <= maxDistinct)) {
+                candidates.add(column);
+            }
+        }
+        candidates.sort(Comparator.comparing((DataColumn c) -> !TEMPORAL_TYPES.contains(c.getDataType()))
+                .thenComparing(DataColumn::getDistinctCount));
+        
+        String suffix = physicalTableName.substring(physicalTableName.lastIndexOf('_') + 1);
+        for (DataColumn column : candidates.subList(0, Math.min(candidates.size(), config.getMaxIndexesPerTable()))) {
+            String indexName = "ix_" + suffix + "_" + (columns.indexOf(column) + 1);
+            try {
+                jdbcTemplate.execute("CREATE INDEX " + indexName + " ON " + physicalTableName
+                        + " (" + column.getColumnName() + ")");
+                column.setIndexed(true);
+                log.info("数据表{}列{}已建索引（不同值 {}）", physicalTableName, column.getColumnName(),
+                        column.getDistinctCount());
+            } catch (DataAccessException e) {
+                log.warn("数据表{}列{}建索引失败: {}", physicalTableName, column.getColumnName(), e.getMessage());
+            }
+        }
+    }
+    
+    private void analyze(String physicalTableName) {
+        if (databaseProduct.isPostgres()) {
+            jdbcTemplate.execute("ANALYZE " + physicalTableName);
+        } else if (databaseProduct.isH2()) {
+            jdbcTemplate.execute("ANALYZE TABLE " + physicalTableName);
+        }
+    }
+    
+    private static long toLong(Object value) {
+        return value instanceof Number number ? number.longValue() : 0;
+    }
+    
+    private static String format(Object value) {
+        if (value == null) {
+            return null;
+        }
+        String text = value instanceof BigDecimal decimal ? decimal.toPlainString() : value.toString();
+        return text.length() <= MAX_VALUE_LENGTH ? text : text.substring(0, MAX_VALUE_LENGTH);
+    }
+}
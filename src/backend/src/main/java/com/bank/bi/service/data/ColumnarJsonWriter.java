@@ -0,0 +1,102 @@
+package com.bank.bi.service.data;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.support.JdbcUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * 将 ResultSet 逐行写为列式 JSON：{"columns":[...],"rows":[[...],...],"rowCount":n,"truncated":bool}
+ * 每行直接写入输出流，不构造中间对象，内存占用与结果行数无关
+ */
+public class ColumnarJsonWriter implements ResultSetExtractor<Long> {
+    
+    private final JsonGenerator generator;
+    private final int maxRows;
+    
+    /**
+     * @param generator 输出目标，由调用方负责关闭
+     * @param maxRows   查询的行数上限，达到上限时标记 truncated
+     */
+    public ColumnarJsonWriter(JsonGenerator generator, int maxRows) {
+        this.generator = generator;
+        this.maxRows = maxRows;
+    }
+    
+    @Override
+    public Long extractData(ResultSet rs) throws SQLException {
+        try {
+            ResultSetMetaData metaData = rs.getMetaData();
+            int columnCount = metaData.getColumnCount();
+            int[] types = new int[columnCount + 1];
+            
+            generator.writeStartObject();
+            generator.writeArrayFieldStart("columns");
+            for (int i = 1; i <= columnCount; i++) {
+                types[i] = metaData.getColumnType(i);
+                generator.writeString(JdbcUtils.lookupColumnName(metaData, i));
+            }
+            generator.writeEndArray();
+            
+            long rowCount = 0;
+            generator.writeArrayFieldStart("rows");
+            while (rs.next()) {
+                generator.writeStartArray();
+                for (int i = 1; i <= columnCount; i++) {
+                    writeValue(rs, i, types[i]);
+                }
+                generator.writeEndArray();
+                rowCount++;
+            }
+            generator.writeEndArray();
+            
+            generator.writeNumberField("rowCount", rowCount);
+            generator.writeBooleanField("truncated", rowCount >= maxRows);
+            generator.writeEndObject();
+            generator.flush();
+            return rowCount;
+        } catch (IOException e) {
+            // 客户端断开等写出失败，抛出后由 JdbcTemplate 关闭语句与结果集
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    private void writeValue(ResultSet rs, int index, int type) throws SQLException, IOException {
+        switch (type) {
+            case Types.TINYINT, Types.SMALLINT, Types.INTEGER, Types.BIGINT -> {
+                long value = rs.getLong(index);
+                if (rs.wasNull()) {
+                    generator.writeNull();
+                } else {
+                    generator.writeNumber(value);
+                }
+            }
+            case Types.REAL, Types.FLOAT, Types.DOUBLE -> {
+                double value = rs.getDouble(index);
+                if (rs.wasNull()) {
+                    generator.writeNull();
+                } else {
+                    generator.writeNumber(value);
+                }
+            }
+            case Types.NUMERIC, Types.DECIMAL -> generator.writeNumber(rs.getBigDecimal(index));
+            case Types.BOOLEAN, Types.BIT -> {
+                boolean value = rs.getBoolean(index);
+                if (rs.wasNull()) {
+                    generator.writeNull();
+                } else {
+                    generator.writeBoolean(value);
+                }
+            }
+            case Types.CHAR, Types.VARCHAR, Types.LONGVARCHAR, Types.NCHAR, Types.NVARCHAR, Types.CLOB,
+                    Types.DATE, Types.TIME, Types.TIMESTAMP -> generator.writeString(rs.getString(index));
+            default -> generator.writeObject(rs.getObject(index));
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.bank.bi.service.data;
+
+/**
+ * 数据表变更事件：上传新数据表或数据表元数据更新后发布
+ *
+ * @param tableName 发生变更的物理表名
+ * @param change    变更类型
+ */
+public record DataTableChangedEvent(String tableName, Change change) {
+    
+    public enum Change {
+        /** 新上传的数据表 */
+        CREATED,
+        /** 列统计完成：数据未变，只有提示词中的列信息变化 */
+        STATISTICS
+    }
+}
@@ -0,0 +1,50 @@
+package com.bank.bi.service.data;
+
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+
+/**
+ * 当前数据源的数据库类型，首次使用时从连接元数据读取
+ */
+@Component
+public class DatabaseProduct {
+    
+    private final JdbcTemplate jdbcTemplate;
+    private volatile String name;
+    
+    public DatabaseProduct(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+    
+    /**
+     * 小写的数据库产品名，如 postgresql、h2
+     */
+    public String name() {
+        String product = name;
+        if (product == null) {
+            product = jdbcTemplate.execute((ConnectionCallback<String>) con ->
+                    con.getMetaData().getDatabaseProductName().toLowerCase(Locale.ROOT));
+            name = product;
+        }
+        return product;
+    }
+    
+    public boolean isPostgres() {
+        return name().contains("postgresql");
+    }
+    
+    public boolean isH2() {
+        return name().contains("h2");
+    }
+    
+    /**
+     * 上传数据表的自增主键列定义：使用标准 SQL 写法，PostgreSQL 与 H2（含 MODE=PostgreSQL）都支持；
+     * H2 的 IDENTITY 简写在 PostgreSQL 及 H2 的 PostgreSQL 兼容模式下都不可用
+     */
+    public String identityColumn(String columnName) {
+        return columnName + " BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY";
+    }
+}
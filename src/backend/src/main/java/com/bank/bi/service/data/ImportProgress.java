@@ -0,0 +1,22 @@
+package com.bank.bi.service.data;
+
+/**
+ * CSV 导入进度回调：每提交一批数据后调用，随后检查是否已请求取消
+ */
+public interface ImportProgress {
+    
+    /** 不关心进度、不可取消的导入 */
+    ImportProgress NONE = rowsImported -> { };
+    
+    void onBatchCommitted(long rowsImported);
+    
+    /**
+     * 已从文件读取的字节数（用于估算完成百分比）
+     */
+    default void onBytesRead(long bytesRead) {
+    }
+    
+    default boolean isCancelled() {
+        return false;
+    }
+}
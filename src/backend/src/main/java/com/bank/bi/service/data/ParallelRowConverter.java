@@ -0,0 +1,90 @@
+package com.bank.bi.service.data;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 按推断的列类型并行转换一批 CSV 行，写入按列存放的 ColumnBatch
+ * CSV 中引号内可以换行，按字节切分文件无法保证落在行边界上，因此解析仍在导入线程顺序进行；
+ * 每凑满一批后以 fork/join 将批次二分到各个核上转换，每个子任务处理一段连续的行
+ */
+public class ParallelRowConverter {
+    
+    /** 单个子任务至少转换的行数，过小时任务调度开销超过转换本身 */
+    private static final int MIN_ROWS_PER_TASK = 256;
+    
+    private final CellTypeClassifier.ColumnType[] types;
+    private final List<String> columnNames;
+    private final ForkJoinPool pool;
+    
+    public ParallelRowConverter(CellTypeClassifier.ColumnType[] types, List<String> columnNames, ForkJoinPool pool) {
+        this.types = types;
+        this.columnNames = columnNames;
+        this.pool = pool;
+    }
+    
+    /**
+     * 转换一批行（每行列数与列类型数一致）写入 batch，任一取值无法转换时抛出异常并指明列名与取值
+     */
+    public void convert(List<List<String>> rows, ColumnBatch batch) {
+        batch.reset(rows.size());
+        AtomicReference<String> error = new AtomicReference<>();
+        int threshold = Math.max(MIN_ROWS_PER_TASK, rows.size() / (pool.getParallelism() * 4));
+        pool.invoke(new ConvertTask(this, rows, batch, 0, rows.size(), threshold, error));
+        if (error.get() != null) {
+            throw new RuntimeException(error.get());
+        }
+    }
+    
+    private void convertRow(List<String> row, int index, ColumnBatch batch) {
+        for (int j = 0; j < types.length; j++) {
+            try {
+                batch.set(index, j, CellTypeClassifier.clean(row.get(j)));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("列 " + columnNames.get(j) + " 的" + e.getMessage() + "（列类型按样本行推断）");
+            }
+        }
+    }
+    
+    private static class ConvertTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        
+        private final ParallelRowConverter converter;
+        private final List<List<String>> rows;
+        private final ColumnBatch batch;
+        private final int from;
+        private final int to;
+        private final int threshold;
+        private final AtomicReference<String> error;
+        
+        ConvertTask(ParallelRowConverter converter, List<List<String>> rows, ColumnBatch batch,
+                    int from, int to, int threshold, AtomicReference<String> error) {
+            this.converter = converter;
+            this.rows = rows;
+            this.batch = batch;
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+            this.error = error;
+        }
+        
+        @Override
+        protected void compute() {
+            if (to - from > threshold) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new ConvertTask(converter, rows, batch, from, middle, threshold, error),
+                        new ConvertTask(converter, rows, batch, middle, to, threshold, error));
+                return;
+            }
+            for (int i = from; i < to && error.get() == null; i++) {
+                try {
+                    converter.convertRow(rows.get(i), i, batch);
+                } catch (IllegalArgumentException e) {
+                    error.compareAndSet(null, e.getMessage());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.bank.bi.service.data;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CancellationException;
+
+/**
+ * 向导入进度报告已读取字节数的输入流；已请求取消时读取抛出 CancellationException，
+ * 使导入在解析途中即可停止，无需等到下一批提交
+ */
+public class ProgressInputStream extends FilterInputStream {
+    
+    private final ImportProgress progress;
+    private long count;
+    
+    public ProgressInputStream(InputStream in, ImportProgress progress) {
+        super(in);
+        this.progress = progress;
+    }
+    
+    @Override
+    public int read() throws IOException {
+        checkCancelled();
+        int b = super.read();
+        if (b >= 0) {
+            progress.onBytesRead(++count);
+        }
+        return b;
+    }
+    
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        checkCancelled();
+        int n = super.read(b, off, len);
+        if (n > 0) {
+            count += n;
+            progress.onBytesRead(count);
+        }
+        return n;
+    }
+    
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(n);
+        count += skipped;
+        progress.onBytesRead(count);
+        return skipped;
+    }
+    
+    private void checkCancelled() {
+        if (progress.isCancelled()) {
+            throw new CancellationException("导入已取消");
+        }
+    }
+}
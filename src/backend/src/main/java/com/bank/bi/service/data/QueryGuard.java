@@ -0,0 +1,428 @@
+package com.bank.bi.service.data;
+
+import com.bank.bi.config.DataConfig;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.expression.ExpressionVisitorAdapter;
+import net.sf.jsqlparser.expression.LongValue;
+import net.sf.jsqlparser.expression.Parenthesis;
+import net.sf.jsqlparser.expression.operators.conditional.AndExpression;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.schema.Table;
+import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.Statements;
+import net.sf.jsqlparser.statement.select.FromItem;
+import net.sf.jsqlparser.statement.select.FromItemVisitorAdapter;
+import net.sf.jsqlparser.statement.select.Join;
+import net.sf.jsqlparser.statement.select.LateralSubSelect;
+import net.sf.jsqlparser.statement.select.Limit;
+import net.sf.jsqlparser.statement.select.ParenthesisFromItem;
+import net.sf.jsqlparser.statement.select.PlainSelect;
+import net.sf.jsqlparser.statement.select.Select;
+import net.sf.jsqlparser.statement.select.SelectBody;
+import net.sf.jsqlparser.statement.select.SelectVisitorAdapter;
+import net.sf.jsqlparser.statement.select.SetOperationList;
+import net.sf.jsqlparser.statement.select.SubJoin;
+import net.sf.jsqlparser.statement.select.SubSelect;
+import net.sf.jsqlparser.statement.select.TableFunction;
+import net.sf.jsqlparser.statement.select.WithItem;
+import net.sf.jsqlparser.util.TablesNamesFinder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * AI 生成查询的校验
+ * 将 SQL 解析为语法树：只允许单条 SELECT、只允许访问上传数据表、拒绝没有关联条件的 JOIN 与表函数，
+ * 并为最外层查询强制行数上限；执行前用 EXPLAIN 估算代价，超过上限的查询直接拒绝
+ */
+@Slf4j
+@Component
+public class QueryGuard {
+    
+    /** 可读写服务器文件或长时间占用连接的函数 */
+    private static final Pattern FORBIDDEN_FUNCTION = Pattern.compile(
+            "\\b(FILE_READ|FILE_WRITE|CSVREAD|CSVWRITE|LINK_SCHEMA|PG_READ_FILE|PG_READ_BINARY_FILE|PG_LS_DIR"
+                    + "|LO_IMPORT|LO_EXPORT|DBLINK|PG_SLEEP|SLEEP)\\s*\\(",
+            Pattern.CASE_INSENSITIVE);
+    /** H2 执行计划中的全表扫描标记，如 PUBLIC.USER_DATA_XXX.tableScan */
+    private static final Pattern H2_TABLE_SCAN = Pattern.compile("/\\*\\s*\"?(\\w+)\"?\\.\"?(\\w+)\"?\\.tableScan");
+    
+    private final DataConfig.QueryGuard config;
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final DatabaseProduct databaseProduct;
+    private final Pattern allowedTables;
+    
+    public QueryGuard(DataConfig dataConfig, JdbcTemplate jdbcTemplate, ObjectMapper objectMapper,
+                      DatabaseProduct databaseProduct) {
+        this.config = dataConfig.getQueryGuard();
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.databaseProduct = databaseProduct;
+        this.allowedTables = Pattern.compile(config.getAllowedTables(), Pattern.CASE_INSENSITIVE);
+    }
+    
+    /**
+     * 校验 SQL 并返回强制了行数上限的 SQL
+     */
+    public String prepare(String sql) {
+        return prepare(sql, config.getMaxRows());
+    }
+    
+    /**
+     * 校验 SQL 并返回强制了指定行数上限的 SQL
+     */
+    public String prepare(String sql, int maxRows) {
+        if (FORBIDDEN_FUNCTION.matcher(sql).find()) {
+            throw new RuntimeException("查询中包含不允许使用的函数");
+        }
+        
+        Select select = parseSelect(sql);
+        for (String table : new TablesNamesFinder().getTableList((Statement) select)) {
+            String name = table.substring(table.lastIndexOf('.') + 1).replace("\"", "");
+            if (!allowedTables.matcher(name).matches()) {
+                throw new RuntimeException("不允许查询数据表: " + name);
+            }
+        }
+        
+        JoinChecker joinChecker = new JoinChecker();
+        if (select.getWithItemsList() != null) {
+            select.getWithItemsList().forEach(withItem -> withItem.accept(joinChecker));
+        }
+        select.getSelectBody().accept(joinChecker);
+        enforceLimit(select.getSelectBody(), maxRows);
+        return select.toString();
+    }
+    
+    /**
+     * 用 EXPLAIN 估算查询代价，超过上限时抛出异常；不支持的数据库不做检查
+     */
+    public void checkCost(String sql) {
+        if (!config.isExplainEnabled()) {
+            return;
+        }
+        if (databaseProduct.isPostgres()) {
+            checkPostgresCost(sql);
+        } else if (databaseProduct.isH2()) {
+            checkH2Cost(sql);
+        }
+    }
+    
+    public int getMaxRows() {
+        return config.getMaxRows();
+    }
+    
+    public int getQueryTimeoutSeconds() {
+        return config.getQueryTimeoutSeconds();
+    }
+    
+    public int getStreamMaxRows() {
+        return config.getStreamMaxRows();
+    }
+    
+    public int getStreamTimeoutSeconds() {
+        return config.getStreamTimeoutSeconds();
+    }
+    
+    public int getFetchSize() {
+        return config.getFetchSize();
+    }
+    
+    private Select parseSelect(String sql) {
+        Statements statements;
+        try {
+            statements = CCJSqlParserUtil.parseStatements(sql);
+        } catch (JSQLParserException e) {
+            log.warn("SQL 解析失败: {}", sql, e);
+            throw new RuntimeException("SQL 语法无法解析");
+        }
+        if (statements.getStatements().size() != 1) {
+            throw new RuntimeException("仅支持单条查询语句");
+        }
+        if (!(statements.getStatements().get(0) instanceof Select select)) {
+            throw new RuntimeException("仅支持 SELECT 查询语句");
+        }
+        return select;
+    }
+    
+    /**
+     * 关联条件（ON 或 WHERE 中以 AND 连接的某一项）是否同时引用了两侧的列；列须带表名或别名
+     */
+    private static boolean relates(List<Expression> conditions, Set<String> left, Set<String> right) {
+        for (Expression condition : conditions) {
+            boolean[] referenced = new boolean[2];
+            condition.accept(new ExpressionVisitorAdapter() {
+                @Override
+                public void visit(Column column) {
+                    if (column.getTable() != null && column.getTable().getName() != null) {
+                        String qualifier = identifier(column.getTable().getName());
+                        referenced[0] |= left.contains(qualifier);
+                        referenced[1] |= right.contains(qualifier);
+                    }
+                }
+            });
+            if (referenced[0] && referenced[1]) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * 按 AND 拆分条件
+     */
+    private static List<Expression> conjuncts(Expression expression) {
+        List<Expression> result = new ArrayList<>();
+        if (expression instanceof AndExpression and) {
+            result.addAll(conjuncts(and.getLeftExpression()));
+            result.addAll(conjuncts(and.getRightExpression()));
+        } else if (expression instanceof Parenthesis parenthesis) {
+            result.addAll(conjuncts(parenthesis.getExpression()));
+        } else if (expression != null) {
+            result.add(expression);
+        }
+        return result;
+    }
+    
+    /**
+     * FROM 项在列引用中可用的名称：有别名时为别名，否则为表名
+     */
+    private static Set<String> names(FromItem fromItem) {
+        Set<String> names = new HashSet<>();
+        if (fromItem.getAlias() != null) {
+            names.add(identifier(fromItem.getAlias().getName()));
+        } else if (fromItem instanceof Table table) {
+            names.add(identifier(table.getName()));
+        } else if (fromItem instanceof ParenthesisFromItem parenthesis) {
+            names.addAll(names(parenthesis.getFromItem()));
+        } else if (fromItem instanceof SubJoin subJoin) {
+            names.addAll(names(subJoin.getLeft()));
+            subJoin.getJoinList().forEach(join -> names.addAll(names(join.getRightItem())));
+        }
+        return names;
+    }
+    
+    private static String identifier(String name) {
+        return name.replace("\"", "").replace("`", "").toLowerCase(Locale.ROOT);
+    }
+    
+    /**
+     * 遍历所有层级的查询：FROM/JOIN 子查询、集合运算、WITH，以及 SELECT 列表、WHERE、HAVING 等表达式中的子查询。
+     * 检查只读、JOIN 关联条件（CROSS JOIN、没有 ON/USING 或 ON 中没有列的 JOIN、
+     * WHERE 中没有同时引用两侧列的条件的逗号连接都会产生笛卡尔积），并拒绝 FROM 中的表函数（如 SYSTEM_RANGE）
+     */
+    private static class JoinChecker extends SelectVisitorAdapter {
+        
+        private final ExpressionVisitorAdapter expressionVisitor = new ExpressionVisitorAdapter();
+        private final FromItemVisitorAdapter fromItemVisitor = new FromItemVisitorAdapter() {
+            
+            @Override
+            public void visit(SubSelect subSelect) {
+                visitSubSelect(subSelect);
+            }
+            
+            @Override
+            public void visit(LateralSubSelect lateralSubSelect) {
+                visitSubSelect(lateralSubSelect.getSubSelect());
+            }
+            
+            @Override
+            public void visit(SubJoin subJoin) {
+                subJoin.getLeft().accept(this);
+                checkJoins(subJoin.getLeft(), subJoin.getJoinList(), null);
+            }
+            
+            @Override
+            public void visit(ParenthesisFromItem parenthesis) {
+                parenthesis.getFromItem().accept(this);
+            }
+            
+            @Override
+            public void visit(TableFunction tableFunction) {
+                throw new RuntimeException("不允许在 FROM 中使用表函数: " + tableFunction.getFunction().getName());
+            }
+        };
+        
+        JoinChecker() {
+            expressionVisitor.setSelectVisitor(this);
+        }
+        
+        @Override
+        public void visit(PlainSelect plain) {
+            if (plain.getIntoTables() != null || plain.isForUpdate()) {
+                throw new RuntimeException("仅支持只读查询");
+            }
+            if (plain.getFromItem() != null) {
+                plain.getFromItem().accept(fromItemVisitor);
+                checkJoins(plain.getFromItem(), plain.getJoins(), plain.getWhere());
+            }
+            if (plain.getSelectItems() != null) {
+                plain.getSelectItems().forEach(item -> item.accept(expressionVisitor));
+            }
+            visitExpression(plain.getWhere());
+            if (plain.getGroupBy() != null) {
+                plain.getGroupBy().getGroupByExpressions().forEach(this::visitExpression);
+            }
+            visitExpression(plain.getHaving());
+            if (plain.getOrderByElements() != null) {
+                plain.getOrderByElements().forEach(element -> visitExpression(element.getExpression()));
+            }
+        }
+        
+        @Override
+        public void visit(SetOperationList setOperation) {
+            setOperation.getSelects().forEach(body -> body.accept(this));
+        }
+        
+        @Override
+        public void visit(WithItem withItem) {
+            if (withItem.getSubSelect() != null) {
+                visitSubSelect(withItem.getSubSelect());
+            }
+        }
+        
+        private void visitSubSelect(SubSelect subSelect) {
+            if (subSelect.getWithItemsList() != null) {
+                subSelect.getWithItemsList().forEach(withItem -> withItem.accept(this));
+            }
+            subSelect.getSelectBody().accept(this);
+        }
+        
+        private void visitExpression(Expression expression) {
+            if (expression != null) {
+                expression.accept(expressionVisitor);
+            }
+        }
+        
+        private void checkJoins(FromItem fromItem, List<Join> joins, Expression where) {
+            if (joins == null) {
+                return;
+            }
+            Set<String> left = names(fromItem);
+            List<Expression> whereConditions = conjuncts(where);
+            for (Join join : joins) {
+                join.getRightItem().accept(fromItemVisitor);
+                List<Expression> onConditions = new ArrayList<>();
+                if (join.getOnExpressions() != null) {
+                    join.getOnExpressions().forEach(on -> {
+                        visitExpression(on);
+                        onConditions.addAll(conjuncts(on));
+                    });
+                }
+                Set<String> right = names(join.getRightItem());
+                boolean related = join.isNatural()
+                        || (join.getUsingColumns() != null && !join.getUsingColumns().isEmpty())
+                        || join.getRightItem() instanceof LateralSubSelect
+                        || (!join.isSimple() && !onConditions.isEmpty() && referencesColumn(onConditions))
+                        || relates(whereConditions, left, right);
+                if (join.isCross() || !related) {
+                    throw new RuntimeException("查询包含没有关联条件的 JOIN（笛卡尔积），请补充关联条件（列名前带上表名或别名）");
+                }
+                left.addAll(right);
+            }
+        }
+        
+        /**
+         * ON 条件是否引用了任何列（ON 1=1 等恒真条件不算关联条件）
+         */
+        private static boolean referencesColumn(List<Expression> conditions) {
+            boolean[] referenced = new boolean[1];
+            ExpressionVisitorAdapter finder = new ExpressionVisitorAdapter() {
+                @Override
+                public void visit(Column column) {
+                    referenced[0] = true;
+                }
+            };
+            conditions.forEach(condition -> condition.accept(finder));
+            return referenced[0];
+        }
+    }
+    
+    /**
+     * 最外层查询没有 LIMIT 或 LIMIT 超过上限时改为上限；
+     * 使用 FETCH FIRST 等其他写法时由 Statement.setMaxRows 兜底
+     */
+    private void enforceLimit(SelectBody body, int maxRows) {
+        Limit limit;
+        if (body instanceof PlainSelect plain) {
+            if (plain.getFetch() != null) {
+                return;
+            }
+            limit = plain.getLimit();
+        } else if (body instanceof SetOperationList setOperation) {
+            if (setOperation.getFetch() != null) {
+                return;
+            }
+            limit = setOperation.getLimit();
+        } else {
+            return;
+        }
+        
+        if (limit != null && limit.getRowCount() instanceof LongValue rowCount
+                && rowCount.getValue() <= maxRows) {
+            return;
+        }
+        Limit capped = new Limit().withRowCount(new LongValue(maxRows));
+        if (limit != null) {
+            capped.setOffset(limit.getOffset());
+        }
+        if (body instanceof PlainSelect plain) {
+            plain.setLimit(capped);
+        } else {
+            ((SetOperationList) body).setLimit(capped);
+        }
+    }
+    
+    private void checkPostgresCost(String sql) {
+        String plan = jdbcTemplate.queryForObject("EXPLAIN (FORMAT JSON) " + sql, String.class);
+        double cost;
+        try {
+            cost = objectMapper.readTree(plan).path(0).path("Plan").path("Total Cost").asDouble();
+        } catch (Exception e) {
+            log.warn("无法解析执行计划: {}", plan, e);
+            return;
+        }
+        log.debug("EXPLAIN 估算代价: {}", cost);
+        if (cost > config.getMaxPlanCost()) {
+            throw new RuntimeException(String.format("查询代价过高（估算 %.0f，上限 %.0f），请增加筛选条件或缩小查询范围",
+                    cost, config.getMaxPlanCost()));
+        }
+    }
+    
+    /**
+     * H2 没有代价输出，按执行计划中全表扫描的表估算：H2 使用嵌套循环连接，扫描行数约为各表行数之积
+     */
+    private void checkH2Cost(String sql) {
+        String plan = jdbcTemplate.queryForObject("EXPLAIN " + sql, String.class);
+        if (plan == null) {
+            return;
+        }
+        double scanRows = 1;
+        Matcher matcher = H2_TABLE_SCAN.matcher(plan);
+        while (matcher.find()) {
+            List<Long> rowCounts = jdbcTemplate.queryForList(
+                    "SELECT ROW_COUNT_ESTIMATE FROM INFORMATION_SCHEMA.TABLES "
+                            + "WHERE UPPER(TABLE_SCHEMA) = UPPER(?) AND UPPER(TABLE_NAME) = UPPER(?)",
+                    Long.class, matcher.group(1), matcher.group(2));
+            if (!rowCounts.isEmpty() && rowCounts.get(0) != null) {
+                scanRows *= Math.max(1, rowCounts.get(0));
+            }
+        }
+        log.debug("EXPLAIN 估算扫描行数: {}", scanRows);
+        if (scanRows > config.getMaxScanRows()) {
+            throw new RuntimeException(String.format("查询代价过高（估算扫描 %.0f 行，上限 %.0f），请增加筛选条件或缩小查询范围",
+                    scanRows, config.getMaxScanRows()));
+        }
+    }
+}
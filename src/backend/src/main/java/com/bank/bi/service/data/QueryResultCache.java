@@ -0,0 +1,168 @@
+package com.bank.bi.service.data;
+
+import com.bank.bi.config.DataConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * 上传数据表查询结果缓存
+ * 以规范化后的 SQL 为键，按结果估算内存大小做 LRU 淘汰。只缓存引用了 user_data_* 表的查询：
+ * 上传数据表创建后不再修改或删除，每次上传都创建新的物理表（名称含随机 UUID），已缓存的结果不会过期，无需失效；
+ * 未引用上传数据表的查询（如业务表、元数据表）不缓存。若以后支持删除或替换数据表，需要在此按表失效
+ */
+@Component
+public class QueryResultCache {
+    
+    private static final Pattern USER_TABLE = Pattern.compile("user_data_[0-9a-f]{32}", Pattern.CASE_INSENSITIVE);
+    
+    private final DataConfig.QueryCache config;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter bypasses;
+    private long totalBytes;
+    
+    public QueryResultCache(DataConfig dataConfig, MeterRegistry meterRegistry) {
+        this.config = dataConfig.getQueryCache();
+        this.hits = Counter.builder("data.query.cache.requests").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("data.query.cache.requests").tag("result", "miss").register(meterRegistry);
+        this.bypasses = Counter.builder("data.query.cache.requests").tag("result", "bypass").register(meterRegistry);
+        Gauge.builder("data.query.cache.bytes", this, QueryResultCache::bytes).register(meterRegistry);
+        Gauge.builder("data.query.cache.size", this, QueryResultCache::size).register(meterRegistry);
+    }
+    
+    private record Entry(List<Map<String, Object>> rows, long bytes) {
+    }
+    
+    /**
+     * 读取缓存结果，未命中时执行 loader 并缓存（返回的结果不可修改）
+     */
+    public List<Map<String, Object>> getOrLoad(String sql, Supplier<List<Map<String, Object>>> loader) {
+        if (!config.isEnabled() || !USER_TABLE.matcher(sql).find()) {
+            bypasses.increment();
+            return loader.get();
+        }
+        
+        String key = normalize(sql);
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                hits.increment();
+                return entry.rows();
+            }
+        }
+        misses.increment();
+        
+        List<Map<String, Object>> rows = freeze(loader.get());
+        long bytes = estimateBytes(rows);
+        if (bytes <= config.getMaxEntryBytes()) {
+            synchronized (this) {
+                store(key, new Entry(rows, bytes));
+            }
+        }
+        return rows;
+    }
+    
+    public synchronized long bytes() {
+        return totalBytes;
+    }
+    
+    public synchronized int size() {
+        return entries.size();
+    }
+    
+    private void store(String key, Entry entry) {
+        remove(key);
+        entries.put(key, entry);
+        totalBytes += entry.bytes();
+        
+        // 刚写入的条目位于末尾，从最久未使用的开始淘汰
+        while (totalBytes > config.getMaxBytes() && entries.size() > 1) {
+            remove(entries.keySet().iterator().next());
+        }
+    }
+    
+    private void remove(String key) {
+        Entry entry = entries.remove(key);
+        if (entry != null) {
+            totalBytes -= entry.bytes();
+        }
+    }
+    
+    /**
+     * 合并字符串常量以外的连续空白并去掉末尾分号，字符串常量保持原样
+     */
+    private static String normalize(String sql) {
+        StringBuilder sb = new StringBuilder(sql.length());
+        boolean inString = false;
+        boolean pendingSpace = false;
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (!inString && Character.isWhitespace(c)) {
+                pendingSpace = sb.length() > 0;
+                continue;
+            }
+            if (pendingSpace) {
+                sb.append(' ');
+                pendingSpace = false;
+            }
+            if (c == '\'') {
+                inString = !inString;
+            }
+            sb.append(c);
+        }
+        while (sb.length() > 0 && sb.charAt(sb.length() - 1) == ';') {
+            sb.setLength(sb.length() - 1);
+        }
+        return sb.toString().trim();
+    }
+    
+    private static List<Map<String, Object>> freeze(List<Map<String, Object>> rows) {
+        List<Map<String, Object>> frozen = new ArrayList<>(rows.size());
+        for (Map<String, Object> row : rows) {
+            frozen.add(Collections.unmodifiableMap(row));
+        }
+        return Collections.unmodifiableList(frozen);
+    }
+    
+    /**
+     * 粗略估算结果占用的堆内存
+     */
+    private static long estimateBytes(List<Map<String, Object>> rows) {
+        long bytes = 64;
+        for (Map<String, Object> row : rows) {
+            bytes += 64;
+            for (Map.Entry<String, Object> cell : row.entrySet()) {
+                bytes += 48 + estimateValueBytes(cell.getKey()) + estimateValueBytes(cell.getValue());
+            }
+        }
+        return bytes;
+    }
+    
+    private static long estimateValueBytes(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof CharSequence text) {
+            return 48 + 2L * text.length();
+        }
+        if (value instanceof BigDecimal) {
+            return 64;
+        }
+        if (value instanceof byte[] data) {
+            return 16 + data.length;
+        }
+        return 24;
+    }
+}
@@ -0,0 +1,244 @@
+package com.bank.bi.service.data;
+
+import com.bank.bi.config.HiAgentConfig;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 查询结果摘要
+ * 将查询结果压缩为"列统计 + 表头 + 数据行"的紧凑文本放入分析提示词：列名只出现一次，
+ * 数值列在本地计算 min/max/sum/avg，文本列统计出现最多的取值；超出 token 预算时省略靠后的列、
+ * 对数据行均匀抽样，提示词长度与结果行数、列数无关
+ */
+@Component
+public class ResultSummarizer {
+    
+    /** 绝对值小于 1 的数保留 4 位有效数字，其余保留 2 位小数 */
+    private static final MathContext SMALL_NUMBER_PRECISION = new MathContext(4);
+    private static final String DATA_TITLE = "数据:\n";
+    /** 宽表省略列时，保证展示的列至少容纳的数据行数 */
+    private static final int MIN_SAMPLE_ROWS = 5;
+    
+    private final HiAgentConfig.ResultSummary config;
+    
+    public ResultSummarizer(HiAgentConfig hiAgentConfig) {
+        this.config = hiAgentConfig.getResultSummary();
+    }
+    
+    public String summarize(List<Map<String, Object>> rows) {
+        if (rows.isEmpty()) {
+            return "（查询结果为空）";
+        }
+        List<String> columns = new ArrayList<>(rows.get(0).keySet());
+        int budget = config.getMaxPromptTokens();
+        
+        StringBuilder sb = new StringBuilder();
+        // 单行结果直接看数据即可，不需要统计
+        if (rows.size() > 1) {
+            sb.append("列统计:\n");
+            int statsBudget = budget / 2;
+            for (int i = 0; i < columns.size(); i++) {
+                String line = describeColumn(columns.get(i), rows);
+                if (SchemaCatalog.estimateTokens(sb) + SchemaCatalog.estimateTokens(line) > statsBudget) {
+                    sb.append("- ……其余 ").append(columns.size() - i).append(" 列省略\n");
+                    break;
+                }
+                sb.append(line);
+            }
+        }
+        
+        String[][] cells = new String[rows.size()][columns.size()];
+        int[] widths = new int[columns.size()];
+        for (int r = 0; r < rows.size(); r++) {
+            Map<String, Object> row = rows.get(r);
+            for (int i = 0; i < columns.size(); i++) {
+                cells[r][i] = formatCell(row.get(columns.get(i)));
+                widths[i] = Math.max(widths[i], cells[r][i].length());
+            }
+        }
+        
+        // 概要行按抽样时的最长形式预留
+        int remaining = budget - SchemaCatalog.estimateTokens(sb) - SchemaCatalog.estimateTokens(DATA_TITLE)
+                - SchemaCatalog.estimateTokens(overview(rows.size(), columns.size(), rows.size()));
+        int shown = projectColumns(columns, widths, Math.min(rows.size(), MIN_SAMPLE_ROWS), remaining);
+        StringBuilder header = new StringBuilder(String.join(" | ", columns.subList(0, shown)));
+        if (shown < columns.size()) {
+            header.append(shown > 0 ? " | " : "").append(omittedColumns(columns.size() - shown));
+        }
+        header.append('\n');
+        
+        List<String> lines = new ArrayList<>(rows.size());
+        int rowTokens = 0;
+        for (int r = 0; shown > 0 && r < rows.size(); r++) {
+            String line = String.join(" | ", Arrays.asList(cells[r]).subList(0, shown)) + "\n";
+            lines.add(line);
+            rowTokens += SchemaCatalog.estimateTokens(line);
+        }
+        
+        int rowBudget = remaining - SchemaCatalog.estimateTokens(header);
+        List<String> selected = rowTokens <= rowBudget ? lines : sample(lines, rowBudget, rowTokens);
+        
+        StringBuilder summary = new StringBuilder(overview(rows.size(), columns.size(),
+                selected.size() < rows.size() ? selected.size() : -1));
+        summary.append(sb).append(DATA_TITLE).append(header);
+        selected.forEach(summary::append);
+        return summary.toString();
+    }
+    
+    /**
+     * 概要行，sampled 为抽样行数（未抽样时为 -1）
+     */
+    private static String overview(int rowCount, int columnCount, int sampled) {
+        StringBuilder sb = new StringBuilder("共 ").append(rowCount).append(" 行，").append(columnCount).append(" 列");
+        if (sampled >= 0) {
+            sb.append("（数据行为均匀抽样的 ").append(sampled).append(" 行，统计基于全部数据）");
+        }
+        return sb.append('\n').toString();
+    }
+    
+    /**
+     * 数据部分展示的列数：取前 N 列，使表头（含省略说明）与按各列最大宽度计算的 minRows 行数据都在预算内，
+     * 因此抽样至少能容纳这些行；宽表的其余列只在表头注明省略
+     */
+    private static int projectColumns(List<String> columns, int[] widths, int minRows, int budget) {
+        int headerChars = 1;
+        int rowChars = 1;
+        for (int i = 0; i < columns.size(); i++) {
+            int separator = i > 0 ? 3 : 0;
+            headerChars += separator + columns.get(i).length();
+            rowChars += separator + widths[i];
+            int omitted = columns.size() - i - 1;
+            int noteChars = omitted > 0 ? 3 + omittedColumns(omitted).length() : 0;
+            if (SchemaCatalog.estimateTokens(headerChars + noteChars)
+                    + minRows * SchemaCatalog.estimateTokens(rowChars) > budget) {
+                return i;
+            }
+        }
+        return columns.size();
+    }
+    
+    private static String omittedColumns(int count) {
+        return "…其余 " + count + " 列省略";
+    }
+    
+    /**
+     * 按平均行长估算可容纳的行数，等间距抽样，不超过预算
+     */
+    private static List<String> sample(List<String> lines, int budget, int totalTokens) {
+        int averageTokens = Math.max(1, totalTokens / lines.size());
+        int count = Math.max(1, Math.min(lines.size(), budget / averageTokens));
+        List<String> selected = new ArrayList<>(count);
+        int used = 0;
+        for (int k = 0; k < count; k++) {
+            String line = lines.get((int) ((long) k * lines.size() / count));
+            int tokens = SchemaCatalog.estimateTokens(line);
+            if (used + tokens > budget) {
+                break;
+            }
+            selected.add(line);
+            used += tokens;
+        }
+        return selected;
+    }
+    
+    private String describeColumn(String column, List<Map<String, Object>> rows) {
+        int nulls = 0;
+        int numbers = 0;
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        double sum = 0;
+        String minText = null;
+        String maxText = null;
+        Map<String, Integer> frequencies = new HashMap<>();
+        
+        for (Map<String, Object> row : rows) {
+            Object value = row.get(column);
+            if (value == null) {
+                nulls++;
+            } else if (value instanceof Number number) {
+                double v = number.doubleValue();
+                numbers++;
+                min = Math.min(min, v);
+                max = Math.max(max, v);
+                sum += v;
+            } else {
+                // 日期、时间的字符串形式按字典序即时间顺序
+                String text = value.toString();
+                if (minText == null || text.compareTo(minText) < 0) {
+                    minText = text;
+                }
+                if (maxText == null || text.compareTo(maxText) > 0) {
+                    maxText = text;
+                }
+                if (frequencies.size() < config.getMaxDistinctTracked() || frequencies.containsKey(text)) {
+                    frequencies.merge(text, 1, Integer::sum);
+                }
+            }
+        }
+        
+        StringBuilder line = new StringBuilder("- ").append(column).append(": ");
+        if (numbers > 0 && numbers + nulls == rows.size()) {
+            line.append("min=").append(formatNumber(min))
+                .append(", max=").append(formatNumber(max))
+                .append(", sum=").append(formatNumber(sum))
+                .append(", avg=").append(formatNumber(sum / numbers));
+        } else if (!frequencies.isEmpty()) {
+            line.append("不同值").append(frequencies.size() >= config.getMaxDistinctTracked() ? "≥" : "=")
+                .append(frequencies.size());
+            if (frequencies.size() < rows.size() - nulls) {
+                line.append(", 最多: ");
+                frequencies.entrySet().stream()
+                        .sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
+                        .limit(config.getTopK())
+                        .forEach(e -> line.append(truncate(e.getKey())).append('(').append(e.getValue()).append(") "));
+            } else {
+                line.append(", 范围: ").append(truncate(minText)).append(" ~ ").append(truncate(maxText));
+            }
+        }
+        if (nulls > 0) {
+            line.append(", 空值=").append(nulls);
+        }
+        return line.toString().stripTrailing() + "\n";
+    }
+    
+    private String formatCell(Object value) {
+        if (value == null) {
+            return "";
+        }
+        if (value instanceof Number number) {
+            return formatNumber(number);
+        }
+        return truncate(value.toString().replace('\n', ' ').replace('|', '/'));
+    }
+    
+    private String truncate(String text) {
+        return text.length() <= config.getMaxCellChars() ? text : text.substring(0, config.getMaxCellChars()) + "…";
+    }
+    
+    private static String formatNumber(Number number) {
+        if (number instanceof Integer || number instanceof Long || number instanceof Short || number instanceof Byte) {
+            return number.toString();
+        }
+        if (number instanceof BigDecimal decimal) {
+            return decimal.stripTrailingZeros().toPlainString();
+        }
+        return formatNumber(number.doubleValue());
+    }
+    
+    private static String formatNumber(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return String.valueOf(value);
+        }
+        BigDecimal decimal = BigDecimal.valueOf(value);
+        decimal = Math.abs(value) < 1 ? decimal.round(SMALL_NUMBER_PRECISION) : decimal.setScale(2, RoundingMode.HALF_UP);
+        return decimal.stripTrailingZeros().toPlainString();
+    }
+}
@@ -0,0 +1,39 @@
+package com.bank.bi.service.data;
+
+import cn.hutool.cache.Cache;
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.core.util.IdUtil;
+import com.bank.bi.config.DataConfig;
+import org.springframework.stereotype.Component;
+
+/**
+ * 智能分析执行过的查询
+ * 分析结果中的数据受行数上限截断，保存生成的 SQL 并返回随机查询ID，客户端凭查询ID流式读取完整结果，
+ * 无需（也不允许）提交任意 SQL；超过保留时长或数量上限时淘汰
+ */
+@Component
+public class SavedQueryStore {
+    
+    private final Cache<String, String> queries;
+    
+    public SavedQueryStore(DataConfig dataConfig) {
+        DataConfig.QueryGuard config = dataConfig.getQueryGuard();
+        this.queries = CacheUtil.newLRUCache(config.getMaxSavedQueries(), config.getSavedQueryTtlMinutes() * 60_000L);
+    }
+    
+    /**
+     * 保存查询，返回查询ID
+     */
+    public String save(String sql) {
+        String queryId = IdUtil.simpleUUID();
+        queries.put(queryId, sql);
+        return queryId;
+    }
+    
+    /**
+     * 查询不存在或已过期时返回 null
+     */
+    public String get(String queryId) {
+        return queries.get(queryId, false);
+    }
+}
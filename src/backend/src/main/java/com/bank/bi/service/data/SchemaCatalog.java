@@ -0,0 +1,150 @@
+package com.bank.bi.service.data;
+
+import com.bank.bi.model.entity.data.DataColumn;
+import com.bank.bi.model.entity.data.DataTable;
+import com.bank.bi.repository.data.DataTableRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 数据表 Schema 目录
+ * 首次使用时加载全部数据表元数据并预先生成 Schema 描述，之后每次请求直接读取内存快照；
+ * 数据表变更时递增版本号，下次读取时重新加载
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SchemaCatalog {
+    
+    /** 粗略估算：中文约 1 字 ≈ 1 token，英文/符号约 4 字符 ≈ 1 token，取折中值 */
+    private static final double TOKENS_PER_CHAR = 0.7;
+    
+    private final DataTableRepository dataTableRepository;
+    private final AtomicLong version = new AtomicLong();
+    private volatile Snapshot snapshot;
+    
+    /**
+     * 某一版本的 Schema 快照
+     *
+     * @param version      目录版本号
+     * @param tables       各数据表的元数据及其 Schema 片段
+     * @param schemaPrompt 全部数据表的 Schema 描述
+     * @param promptTokens schemaPrompt 的估算 token 数
+     */
+    public record Snapshot(long version, List<TableSchema> tables, String schemaPrompt, int promptTokens) {
+    }
+    
+    /**
+     * 单张数据表的 Schema 片段
+     *
+     * @param table    数据表元数据（含列）
+     * @param fragment 该表在提示词中的描述
+     * @param tokens   fragment 的估算 token 数
+     */
+    public record TableSchema(DataTable table, String fragment, int tokens) {
+    }
+    
+    /**
+     * 获取当前版本的快照
+     */
+    public Snapshot current() {
+        Snapshot current = snapshot;
+        if (current != null && current.version() == version.get()) {
+            return current;
+        }
+        synchronized (this) {
+            long currentVersion = version.get();
+            if (snapshot == null || snapshot.version() != currentVersion) {
+                snapshot = load(currentVersion);
+            }
+            return snapshot;
+        }
+    }
+    
+    public long getVersion() {
+        return version.get();
+    }
+    
+    /**
+     * 数据表变更（事务提交后）使目录失效
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDataTableChanged(DataTableChangedEvent event) {
+        long newVersion = version.incrementAndGet();
+        log.info("数据表{}已变更，Schema目录版本更新为{}", event.tableName(), newVersion);
+    }
+    
+    /**
+     * 估算文本的 token 数
+     */
+    public static int estimateTokens(CharSequence text) {
+        return estimateTokens(text.length());
+    }
+    
+    /**
+     * 按字符数估算 token 数
+     */
+    public static int estimateTokens(int length) {
+        return (int) Math.ceil(length * TOKENS_PER_CHAR);
+    }
+    
+    private Snapshot load(long currentVersion) {
+        List<TableSchema> tables = new ArrayList<>();
+        StringBuilder schemaPrompt = new StringBuilder();
+        for (DataTable table : dataTableRepository.findAll()) {
+            String fragment = buildSchemaDescription(table);
+            tables.add(new TableSchema(table, fragment, estimateTokens(fragment)));
+            schemaPrompt.append(fragment);
+        }
+        int promptTokens = estimateTokens(schemaPrompt);
+        log.info("加载Schema目录: version={}, tables={}, tokens={}", currentVersion, tables.size(), promptTokens);
+        return new Snapshot(currentVersion, List.copyOf(tables), schemaPrompt.toString(), promptTokens);
+    }
+    
+    private String buildSchemaDescription(DataTable table) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Table: ").append(table.getTableName())
+          .append(" (").append(table.getDisplayName()).append(")\n");
+        if (table.getDescription() != null && !table.getDescription().isBlank()) {
+            sb.append("Description: ").append(table.getDescription()).append("\n");
+        }
+        sb.append("Columns:\n");
+        for (DataColumn col : table.getColumns()) {
+            sb.append("  - ").append(col.getColumnName())
+              .append(" (").append(col.getDataType()).append(")");
+            if (col.getDisplayName() != null) {
+                sb.append(" : ").append(col.getDisplayName());
+            }
+            appendStatistics(sb, col);
+            sb.append("\n");
+        }
+        sb.append("\n");
+        return sb.toString();
+    }
+    
+    /**
+     * 导入时统计的列信息：不同值个数、空值比例、取值范围、是否有索引，帮助模型选择筛选与分组条件
+     */
+    private static void appendStatistics(StringBuilder sb, DataColumn col) {
+        if (col.getDistinctCount() == null) {
+            return;
+        }
+        sb.append(" [distinct: ").append(col.getDistinctCount());
+        if (col.getNullRatio() != null && col.getNullRatio() > 0) {
+            sb.append(", nulls: ").append(String.format("%.1f%%", col.getNullRatio() * 100));
+        }
+        if (col.getMinValue() != null && col.getMaxValue() != null) {
+            sb.append(", range: ").append(col.getMinValue()).append(" ~ ").append(col.getMaxValue());
+        }
+        if (Boolean.TRUE.equals(col.getIndexed())) {
+            sb.append(", indexed");
+        }
+        sb.append("]");
+    }
+}
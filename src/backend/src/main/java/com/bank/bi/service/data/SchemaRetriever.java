@@ -0,0 +1,232 @@
+package com.bank.bi.service.data;
+
+import com.bank.bi.config.HiAgentConfig;
+import com.bank.bi.model.entity.data.DataColumn;
+import com.bank.bi.model.entity.data.DataTable;
+import com.bank.bi.service.ai.HashingEmbedder;
+import com.bank.bi.service.ai.RequestFingerprint;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Text-to-SQL Schema 检索
+ * 按用户问题给每张数据表打分（词面匹配 + 可选的向量相似度），只把得分最高的若干张表放入提示词，
+ * 避免提示词随上传表数量线性增长
+ */
+@Slf4j
+@Component
+public class SchemaRetriever {
+    
+    /** 表名、表描述中的词权重高于列名 */
+    private static final float TABLE_TERM_WEIGHT = 2.0f;
+    private static final float COLUMN_TERM_WEIGHT = 1.0f;
+    
+    private final HiAgentConfig.SchemaRetrieval config;
+    private final HashingEmbedder embedder;
+    private final DistributionSummary promptTokens;
+    private final DistributionSummary selectedTables;
+    private volatile Index index;
+    
+    public SchemaRetriever(HiAgentConfig hiAgentConfig, HashingEmbedder embedder, MeterRegistry meterRegistry) {
+        this.config = hiAgentConfig.getSchemaRetrieval();
+        this.embedder = embedder;
+        this.promptTokens = DistributionSummary.builder("hiagent.schema.prompt.tokens")
+                .description("Text-to-SQL 提示词中 Schema 部分的估算 token 数")
+                .register(meterRegistry);
+        this.selectedTables = DistributionSummary.builder("hiagent.schema.tables")
+                .description("Text-to-SQL 提示词中包含的数据表数")
+                .register(meterRegistry);
+    }
+    
+    /**
+     * 选出的 Schema
+     *
+     * @param schemaPrompt     提示词中的 Schema 描述
+     * @param tableNames       入选的物理表名（按得分从高到低）
+     * @param totalTables      目录中的数据表总数
+     * @param promptTokens     schemaPrompt 的估算 token 数
+     * @param fullPromptTokens 不裁剪时的估算 token 数
+     */
+    public record Selection(String schemaPrompt, List<String> tableNames, int totalTables,
+                            int promptTokens, int fullPromptTokens) {
+    }
+    
+    /**
+     * 为问题选择最相关的数据表
+     */
+    public Selection select(String question, SchemaCatalog.Snapshot snapshot) {
+        List<SchemaCatalog.TableSchema> tables = snapshot.tables();
+        Selection selection;
+        if (tables.size() <= config.getTopK() && snapshot.promptTokens() <= config.getMaxPromptTokens()) {
+            selection = new Selection(snapshot.schemaPrompt(),
+                    tables.stream().map(t -> t.table().getTableName()).toList(),
+                    tables.size(), snapshot.promptTokens(), snapshot.promptTokens());
+        } else {
+            selection = rank(question, indexFor(snapshot));
+        }
+        
+        promptTokens.record(selection.promptTokens());
+        selectedTables.record(selection.tableNames().size());
+        log.info("Schema裁剪: {}/{} 张表, tokens {}/{}, tables={}", selection.tableNames().size(),
+                selection.totalTables(), selection.promptTokens(), selection.fullPromptTokens(), selection.tableNames());
+        return selection;
+    }
+    
+    private Selection rank(String question, Index index) {
+        List<String> queryTerms = new ArrayList<>(terms(question));
+        double[] idf = new double[queryTerms.size()];
+        double maxLexical = 0;
+        for (int i = 0; i < queryTerms.size(); i++) {
+            int df = index.documentFrequency().getOrDefault(queryTerms.get(i), 0);
+            // 未在任何表中出现的词不参与归一化，避免问题中的数字、口语词拉低得分
+            idf[i] = df == 0 ? 0 : Math.log(1.0 + (double) index.entries().size() / df);
+            maxLexical += idf[i] * TABLE_TERM_WEIGHT;
+        }
+        
+        double embeddingWeight = config.getEmbeddingWeight();
+        float[] questionVector = embeddingWeight > 0 ? embedder.embed(question) : null;
+        
+        List<Scored> scored = new ArrayList<>(index.entries().size());
+        for (IndexedTable entry : index.entries()) {
+            double lexical = 0;
+            for (int i = 0; i < queryTerms.size(); i++) {
+                if (idf[i] > 0) {
+                    lexical += idf[i] * entry.termWeights().getOrDefault(queryTerms.get(i), 0f);
+                }
+            }
+            double score = maxLexical > 0 ? lexical / maxLexical : 0;
+            if (questionVector != null) {
+                double similarity = Math.max(0, HashingEmbedder.similarity(questionVector, entry.vector()));
+                score = (1 - embeddingWeight) * score + embeddingWeight * similarity;
+            }
+            scored.add(new Scored(entry.schema(), score));
+        }
+        // List.sort 是稳定排序，同分时保持目录顺序
+        scored.sort(Comparator.comparingDouble(Scored::score).reversed());
+        
+        StringBuilder prompt = new StringBuilder();
+        List<String> tableNames = new ArrayList<>();
+        int tokens = 0;
+        for (Scored candidate : scored) {
+            if (tableNames.size() >= config.getTopK()) {
+                break;
+            }
+            SchemaCatalog.TableSchema schema = candidate.schema();
+            if (!tableNames.isEmpty() && tokens + schema.tokens() > config.getMaxPromptTokens()) {
+                continue;
+            }
+            prompt.append(schema.fragment());
+            tableNames.add(schema.table().getTableName());
+            tokens += schema.tokens();
+        }
+        return new Selection(prompt.toString(), List.copyOf(tableNames), scored.size(),
+                tokens, index.fullPromptTokens());
+    }
+    
+    /**
+     * 获取与快照版本一致的索引，版本变化时重建
+     */
+    private Index indexFor(SchemaCatalog.Snapshot snapshot) {
+        Index current = index;
+        if (current != null && current.version() == snapshot.version()) {
+            return current;
+        }
+        synchronized (this) {
+            if (index == null || index.version() != snapshot.version()) {
+                index = buildIndex(snapshot);
+            }
+            return index;
+        }
+    }
+    
+    private Index buildIndex(SchemaCatalog.Snapshot snapshot) {
+        List<IndexedTable> entries = new ArrayList<>(snapshot.tables().size());
+        Map<String, Integer> documentFrequency = new HashMap<>();
+        for (SchemaCatalog.TableSchema schema : snapshot.tables()) {
+            DataTable table = schema.table();
+            Map<String, Float> weights = new HashMap<>();
+            StringBuilder text = new StringBuilder();
+            addTerms(weights, text, TABLE_TERM_WEIGHT, table.getDisplayName(), table.getDescription());
+            for (DataColumn column : table.getColumns()) {
+                addTerms(weights, text, COLUMN_TERM_WEIGHT,
+                        column.getColumnName(), column.getDisplayName(), column.getDescription());
+            }
+            weights.keySet().forEach(term -> documentFrequency.merge(term, 1, Integer::sum));
+            float[] vector = config.getEmbeddingWeight() > 0 ? embedder.embed(text.toString()) : null;
+            entries.add(new IndexedTable(schema, weights, vector));
+        }
+        log.debug("重建Schema检索索引: version={}, tables={}, terms={}",
+                snapshot.version(), entries.size(), documentFrequency.size());
+        return new Index(snapshot.version(), entries, documentFrequency, snapshot.promptTokens());
+    }
+    
+    private static void addTerms(Map<String, Float> weights, StringBuilder text, float weight, String... values) {
+        for (String value : values) {
+            if (value == null || value.isBlank()) {
+                continue;
+            }
+            text.append(value).append(' ');
+            for (String term : terms(value)) {
+                weights.merge(term, weight, Math::max);
+            }
+        }
+    }
+    
+    /**
+     * 切词：ASCII 字母数字串整体作为一个词（下划线等符号视为分隔），
+     * 中文等其他文字取相邻双字，单字片段保留单字
+     */
+    private static Set<String> terms(String text) {
+        Set<String> terms = new HashSet<>();
+        if (text == null) {
+            return terms;
+        }
+        int[] cps = RequestFingerprint.normalize(text).toLowerCase(Locale.ROOT).codePoints().toArray();
+        int start = 0;
+        while (start < cps.length) {
+            if (!Character.isLetterOrDigit(cps[start])) {
+                start++;
+                continue;
+            }
+            boolean ascii = cps[start] < 128;
+            int end = start;
+            while (end < cps.length && Character.isLetterOrDigit(cps[end]) && (cps[end] < 128) == ascii) {
+                end++;
+            }
+            if (ascii) {
+                if (end - start >= 2) {
+                    terms.add(new String(cps, start, end - start));
+                }
+            } else if (end - start == 1) {
+                terms.add(new String(cps, start, 1));
+            } else {
+                for (int i = start; i + 1 < end; i++) {
+                    terms.add(new String(cps, i, 2));
+                }
+            }
+            start = end;
+        }
+        return terms;
+    }
+    
+    private record Scored(SchemaCatalog.TableSchema schema, double score) {
+    }
+    
+    private record IndexedTable(SchemaCatalog.TableSchema schema, Map<String, Float> termWeights, float[] vector) {
+    }
+    
+    private record Index(long version, List<IndexedTable> entries, Map<String, Integer> documentFrequency,
+                         int fullPromptTokens) {
+    }
+}
@@ -0,0 +1,78 @@
+package com.bank.bi.service.ai;
+
+import com.bank.bi.config.HiAgentConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SqlTemplateCacheTest {
+    
+    private static final long VERSION = 1;
+    
+    private final SqlTemplateCache cache = new SqlTemplateCache(new HiAgentConfig(), new SimpleMeterRegistry());
+    
+    @Test
+    void bindsNumberInComparison() {
+        cache.put("3月存款总额", "SELECT SUM(balance) FROM t WHERE MONTH(biz_date) = 3", VERSION);
+        assertThat(cache.lookup("4月存款总额", VERSION))
+                .isEqualTo("SELECT SUM(balance) FROM t WHERE MONTH(biz_date) = 4");
+        
+        cache.put("余额超过5000的账户数", "SELECT COUNT(*) FROM t WHERE 5000 < balance", VERSION);
+        assertThat(cache.lookup("余额超过8000的账户数", VERSION))
+                .isEqualTo("SELECT COUNT(*) FROM t WHERE 8000 < balance");
+    }
+    
+    @Test
+    void bindsNumberInDateArithmetic() {
+        cache.put("近3个月的存款", "SELECT * FROM t WHERE biz_date >= DATEADD('MONTH', -3, CURRENT_DATE)", VERSION);
+        assertThat(cache.lookup("近6个月的存款", VERSION))
+                .isEqualTo("SELECT * FROM t WHERE biz_date >= DATEADD('MONTH', -6, CURRENT_DATE)");
+        
+        cache.put("近7天的交易", "SELECT * FROM t WHERE tx_time >= CURRENT_DATE - INTERVAL '7' DAY", VERSION);
+        assertThat(cache.lookup("近30天的交易", VERSION))
+                .isEqualTo("SELECT * FROM t WHERE tx_time >= CURRENT_DATE - INTERVAL '30' DAY");
+    }
+    
+    @Test
+    void refusesCoincidentalNumbers() {
+        cache.put("3月存款", "SELECT ROUND(SUM(balance), 3) FROM t WHERE MONTH(biz_date) = 3", VERSION);
+        assertThat(cache.lookup("4月存款", VERSION)).isNull();
+        
+        cache.put("3月存款排名", "SELECT branch_name FROM t WHERE MONTH(biz_date) = 3 ORDER BY balance DESC LIMIT 3",
+                VERSION);
+        assertThat(cache.lookup("4月存款排名", VERSION)).isNull();
+        
+        // 问题中的数字只在 LIMIT 中出现，不一定是同一含义
+        cache.put("3月存款明细", "SELECT * FROM t LIMIT 3", VERSION);
+        assertThat(cache.lookup("4月存款明细", VERSION)).isNull();
+    }
+    
+    @Test
+    void refusesNumbersInDateLiterals() {
+        cache.put("6月存款", "SELECT SUM(balance) FROM t WHERE biz_date BETWEEN '2024-06-01' AND '2024-06-30'", VERSION);
+        assertThat(cache.lookup("7月存款", VERSION)).isNull();
+        
+        cache.put("2024年存款", "SELECT SUM(balance) FROM t WHERE biz_date >= '2024-01-01'", VERSION);
+        assertThat(cache.lookup("2023年存款", VERSION)).isNull();
+    }
+    
+    @Test
+    void bindsKnownValuesByColumn() {
+        cache.put("北京分行3月存款", "SELECT SUM(balance) FROM t WHERE t.branch_name = '北京分行' AND MONTH(biz_date) = 3",
+                VERSION);
+        assertThat(cache.lookup("北京分行5月存款", VERSION))
+                .isEqualTo("SELECT SUM(balance) FROM t WHERE t.branch_name = '北京分行' AND MONTH(biz_date) = 5");
+        
+        cache.put("北京分行存款", "SELECT SUM(balance) FROM t WHERE branch_name = '北京分行'", VERSION);
+        cache.put("上海分行贷款", "SELECT SUM(loan) FROM t WHERE branch_name = '上海分行'", VERSION);
+        assertThat(cache.lookup("上海分行存款", VERSION))
+                .isEqualTo("SELECT SUM(balance) FROM t WHERE branch_name = '上海分行'");
+    }
+    
+    @Test
+    void catalogVersionChangeClearsTemplates() {
+        cache.put("3月存款总额", "SELECT SUM(balance) FROM t WHERE MONTH(biz_date) = 3", VERSION);
+        assertThat(cache.lookup("4月存款总额", VERSION + 1)).isNull();
+    }
+}
@@ -0,0 +1,152 @@
+package com.bank.bi.service.data;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CSV 单元格类型识别与转换的微基准
+ * 样本为 1000 行 × 6 列（整数、带前导零的编号、金额、日期、时间戳、文本），与导入时类型推断的样本规模一致：
+ * regexBaseline 为改造前逐单元格 replaceAll + String.matches 的推断方式，classify 为 CellTypeClassifier；
+ * convertSequential / convertParallel 为一批 5000 行按列类型转换（单线程与 fork/join）
+ * 运行：mvn -Pbench test-compile exec:exec -Dbench=CellTypeClassifierBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CellTypeClassifierBenchmark {
+    
+    private static final int SAMPLE_ROWS = 1000;
+    private static final int BATCH_ROWS = 5000;
+    private static final String[] BRANCHES = {"朝阳支行", "海淀支行", "西城支行", "东城支行"};
+    
+    private List<List<String>> sample;
+    private List<List<String>> batch;
+    private CellTypeClassifier.ColumnType[] types;
+    private List<String> columnNames;
+    private ColumnBatch buffer;
+    private ForkJoinPool pool;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        sample = rows(random, SAMPLE_ROWS);
+        batch = rows(random, BATCH_ROWS);
+        columnNames = List.of("id", "org_code", "balance", "biz_date", "updated_at", "branch");
+        types = infer(sample);
+        buffer = new ColumnBatch(types, BATCH_ROWS);
+        pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+    
+    @Benchmark
+    public void regexBaseline(Blackhole blackhole) {
+        int columns = sample.get(0).size();
+        boolean[] isInt = new boolean[columns];
+        boolean[] isDouble = new boolean[columns];
+        boolean[] isDate = new boolean[columns];
+        Arrays.fill(isInt, true);
+        Arrays.fill(isDouble, true);
+        Arrays.fill(isDate, true);
+        for (List<String> row : sample) {
+            for (int j = 0; j < columns; j++) {
+                String val = row.get(j).trim().replaceAll("^\"|\"$", "");
+                if (val.isEmpty()) {
+                    continue;
+                }
+                if (isInt[j] && !val.matches("^-?\\d+$")) {
+                    isInt[j] = false;
+                }
+                if (isDouble[j] && !val.matches("^-?\\d*\\.?\\d+$")) {
+                    isDouble[j] = false;
+                }
+                if (isDate[j] && !val.matches("^\\d{4}-\\d{2}-\\d{2}$")) {
+                    isDate[j] = false;
+                }
+            }
+        }
+        blackhole.consume(isInt);
+        blackhole.consume(isDouble);
+        blackhole.consume(isDate);
+    }
+    
+    @Benchmark
+    public CellTypeClassifier.ColumnType[] classify() {
+        return infer(sample);
+    }
+    
+    @Benchmark
+    public ColumnBatch convertSequential() {
+        buffer.reset(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            List<String> row = batch.get(i);
+            for (int j = 0; j < types.length; j++) {
+                buffer.set(i, j, CellTypeClassifier.clean(row.get(j)));
+            }
+        }
+        return buffer;
+    }
+    
+    @Benchmark
+    public ColumnBatch convertParallel() {
+        new ParallelRowConverter(types, columnNames, pool).convert(batch, buffer);
+        return buffer;
+    }
+    
+    private static CellTypeClassifier.ColumnType[] infer(List<List<String>> rows) {
+        int columns = rows.get(0).size();
+        CellTypeClassifier.Inference[] inferences = new CellTypeClassifier.Inference[columns];
+        for (int j = 0; j < columns; j++) {
+            inferences[j] = new CellTypeClassifier.Inference();
+        }
+        for (List<String> row : rows) {
+            for (int j = 0; j < columns; j++) {
+                inferences[j].accept(row.get(j));
+            }
+        }
+        CellTypeClassifier.ColumnType[] result = new CellTypeClassifier.ColumnType[columns];
+        for (int j = 0; j < columns; j++) {
+            result[j] = inferences[j].result();
+        }
+        return result;
+    }
+    
+    private static List<List<String>> rows(Random random, int count) {
+        List<List<String>> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            rows.add(List.of(
+                    String.valueOf(100_000 + i),
+                    String.format("%04d", random.nextInt(100)),
+                    String.format("%.2f", random.nextDouble() * 1_000_000),
+                    String.format("2024-%02d-%02d", i % 12 + 1, i % 28 + 1),
+                    String.format("2024-%02d-%02d %02d:%02d:%02d", i % 12 + 1, i % 28 + 1,
+                            i % 24, i % 60, random.nextInt(60)),
+                    " \"" + BRANCHES[i % BRANCHES.length] + "\" "));
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,99 @@
+package com.bank.bi.service.data;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CellTypeClassifierTest {
+    
+    @Test
+    void integersStayIntUntilTheyOverflow() {
+        assertThat(infer("1", "-5", "+7", "2147483647").sqlType()).isEqualTo("INT");
+        assertThat(infer("1", "2147483648").sqlType()).isEqualTo("BIGINT");
+        assertThat(infer("1", "-9223372036854775808").sqlType()).isEqualTo("DECIMAL(23, 4)");
+        assertThat(infer("9223372036854775808").sqlType()).isEqualTo("DECIMAL(23, 4)");
+        assertThat(infer("1" + "0".repeat(38)).sqlType()).isEqualTo("DOUBLE");
+    }
+    
+    @Test
+    void leadingZeroCodesStayText() {
+        assertThat(infer("007", "012").sqlType()).isEqualTo("VARCHAR(1000)");
+        assertThat(infer("1", "0101").sqlType()).isEqualTo("VARCHAR(1000)");
+        assertThat(infer("0", "0.5").type()).isEqualTo(CellTypeClassifier.CellType.DECIMAL);
+    }
+    
+    @Test
+    void emptyColumnsAreText() {
+        assertThat(infer().sqlType()).isEqualTo("VARCHAR(1000)");
+        assertThat(infer("", "  ", "\"\"", null).sqlType()).isEqualTo("VARCHAR(1000)");
+        assertThat(infer("", "12", " ").sqlType()).isEqualTo("INT");
+    }
+    
+    @Test
+    void datesAndTimestamps() {
+        assertThat(infer("2024-01-05", "2024-02-29").sqlType()).isEqualTo("DATE");
+        assertThat(infer("2024-01-05", "2024-01-05 10:00").sqlType()).isEqualTo("TIMESTAMP");
+        assertThat(infer("2024-01-05T10:00:00.123", "2024-01-06 23:59:59").sqlType()).isEqualTo("TIMESTAMP");
+        assertThat(infer("2023-02-29").sqlType()).isEqualTo("VARCHAR(1000)");
+        assertThat(infer("2024-13-01").sqlType()).isEqualTo("VARCHAR(1000)");
+        assertThat(infer("2024-01-05 24:00").sqlType()).isEqualTo("VARCHAR(1000)");
+        assertThat(infer("2024/01/05").sqlType()).isEqualTo("VARCHAR(1000)");
+        assertThat(infer("2024-01-05", "20240106").sqlType()).isEqualTo("VARCHAR(1000)");
+    }
+    
+    @Test
+    void booleansAndMixedColumns() {
+        assertThat(infer("true", "FALSE").sqlType()).isEqualTo("BOOLEAN");
+        assertThat(infer("true", "1").sqlType()).isEqualTo("VARCHAR(1000)");
+        assertThat(infer("1", "2024-01-05").sqlType()).isEqualTo("VARCHAR(1000)");
+        assertThat(infer("1.5e3", "2").sqlType()).isEqualTo("DOUBLE");
+    }
+    
+    @Test
+    void decimalScaleHasHeadroomBeyondTheSample() {
+        CellTypeClassifier.ColumnType amount = infer("3.85", "100", "-0.5");
+        assertThat(amount.sqlType()).isEqualTo("DECIMAL(18, 4)");
+        assertThat(CellTypeClassifier.convert(amount, "3.875")).isEqualTo(new BigDecimal("3.875"));
+        assertThat(CellTypeClassifier.convert(amount, "3.87500")).isEqualTo(new BigDecimal("3.875"));
+        assertThatThrownBy(() -> CellTypeClassifier.convert(amount, "3.12345"))
+                .isInstanceOf(IllegalArgumentException.class);
+        
+        assertThat(infer("0.123456", "0.654321").sqlType()).isEqualTo("DECIMAL(18, 6)");
+        assertThat(infer("0.1234567", "0.5").sqlType()).isEqualTo("DOUBLE");
+    }
+    
+    @Test
+    void cleanTrimsWhitespaceAndQuotes() {
+        assertThat(CellTypeClassifier.clean("  朝阳支行 ")).isEqualTo("朝阳支行");
+        assertThat(CellTypeClassifier.clean("\"abc\"")).isEqualTo("abc");
+        assertThat(CellTypeClassifier.clean(" \" \"")).isEqualTo(" ");
+        assertThat(CellTypeClassifier.clean("   ")).isNull();
+        assertThat(CellTypeClassifier.clean(null)).isNull();
+    }
+    
+    @Test
+    void convertProducesColumnJavaTypes() {
+        assertThat(CellTypeClassifier.convert(infer("2024-01-05"), "2024-02-29")).isEqualTo(LocalDate.of(2024, 2, 29));
+        assertThat(CellTypeClassifier.convert(infer("2024-01-05 10:00"), "2024-01-05"))
+                .isEqualTo(LocalDateTime.of(2024, 1, 5, 0, 0));
+        assertThat(CellTypeClassifier.convert(infer("2024-01-05 10:00"), "2024-01-05 10:00:00.5"))
+                .isEqualTo(LocalDateTime.of(2024, 1, 5, 10, 0, 0, 500_000_000));
+        assertThat(CellTypeClassifier.convert(infer("true"), "False")).isEqualTo(Boolean.FALSE);
+        assertThatThrownBy(() -> CellTypeClassifier.convert(infer("1"), "abc"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("abc");
+    }
+    
+    private static CellTypeClassifier.ColumnType infer(String... values) {
+        CellTypeClassifier.Inference inference = new CellTypeClassifier.Inference();
+        for (String value : values) {
+            inference.accept(value);
+        }
+        return inference.result();
+    }
+}
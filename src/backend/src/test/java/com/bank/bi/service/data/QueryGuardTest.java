@@ -0,0 +1,85 @@
+package com.bank.bi.service.data;
+
+import com.bank.bi.config.DataConfig;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class QueryGuardTest {
+    
+    private final QueryGuard guard = new QueryGuard(new DataConfig(), null, null, null);
+    
+    @Test
+    void acceptsReadOnlySelectAndCapsLimit() {
+        assertThat(guard.prepare("SELECT branch, SUM(balance) FROM user_data_1 GROUP BY branch"))
+                .endsWith("LIMIT 100");
+        assertThat(guard.prepare("SELECT * FROM user_data_1 LIMIT 10")).endsWith("LIMIT 10");
+        assertThat(guard.prepare("SELECT * FROM user_data_1 LIMIT 5000")).endsWith("LIMIT 100");
+    }
+    
+    @Test
+    void rejectsOtherStatementsAndTables() {
+        assertThatThrownBy(() -> guard.prepare("DELETE FROM user_data_1")).hasMessage("仅支持 SELECT 查询语句");
+        assertThatThrownBy(() -> guard.prepare("SELECT 1; SELECT 2")).hasMessage("仅支持单条查询语句");
+        assertThatThrownBy(() -> guard.prepare("SELECT * FROM sys_user")).hasMessageContaining("sys_user");
+        assertThatThrownBy(() -> guard.prepare("SELECT * FROM user_data_1 WHERE id IN (SELECT id FROM sys_user)"))
+                .hasMessageContaining("sys_user");
+        assertThatThrownBy(() -> guard.prepare("SELECT FILE_READ('/etc/passwd')")).hasMessageContaining("函数");
+    }
+    
+    @Test
+    void acceptsRelatedJoins() {
+        guard.prepare("SELECT * FROM user_data_1 a JOIN user_data_2 b ON a.id = b.id");
+        guard.prepare("SELECT * FROM user_data_1 a JOIN user_data_2 b USING (id)");
+        guard.prepare("SELECT * FROM user_data_1 a, user_data_2 b WHERE a.id = b.id AND a.balance > 0");
+        guard.prepare("SELECT * FROM user_data_1, user_data_2 WHERE user_data_1.id = user_data_2.id");
+        guard.prepare("SELECT * FROM user_data_1 a, user_data_2 b, user_data_3 c WHERE a.id = b.id AND c.id = b.id");
+    }
+    
+    @Test
+    void rejectsCartesianJoins() {
+        assertCartesian("SELECT * FROM user_data_1 a CROSS JOIN user_data_2 b");
+        assertCartesian("SELECT * FROM user_data_1 a, user_data_2 b");
+        assertCartesian("SELECT * FROM user_data_1 a, user_data_2 b WHERE 1 = 1");
+        assertCartesian("SELECT * FROM user_data_1 a, user_data_2 b WHERE a.balance > 0 AND b.balance > 0");
+        assertCartesian("SELECT * FROM user_data_1 a JOIN user_data_2 b ON 1 = 1");
+        // 第三张表没有与前两张表关联
+        assertCartesian("SELECT * FROM user_data_1 a, user_data_2 b, user_data_3 c WHERE a.id = b.id");
+    }
+    
+    @Test
+    void checksJoinsInEveryNestedSelect() {
+        assertCartesian("SELECT * FROM user_data_1 WHERE id IN (SELECT a.id FROM user_data_1 a, user_data_2 b)");
+        assertCartesian("SELECT *, (SELECT COUNT(*) FROM user_data_1 a, user_data_2 b) AS n FROM user_data_3");
+        assertCartesian("SELECT branch FROM user_data_1 GROUP BY branch "
+                + "HAVING COUNT(*) > (SELECT COUNT(*) FROM user_data_1 a, user_data_2 b WHERE 1 = 1)");
+        assertCartesian("SELECT * FROM (SELECT a.id FROM user_data_1 a CROSS JOIN user_data_2 b) t");
+        assertCartesian("WITH t AS (SELECT a.id FROM user_data_1 a, user_data_2 b) SELECT * FROM t");
+        assertCartesian("SELECT id FROM user_data_1 UNION SELECT a.id FROM user_data_1 a, user_data_2 b");
+        assertCartesian("SELECT * FROM user_data_3 WHERE EXISTS (SELECT 1 FROM user_data_1 a, user_data_2 b)");
+    }
+    
+    @Test
+    void rejectsTableFunctions() {
+        assertThatThrownBy(() -> guard.prepare("SELECT * FROM SYSTEM_RANGE(1, 1000000000)"))
+                .hasMessageContaining("表函数");
+        assertThatThrownBy(() -> guard.prepare(
+                "SELECT * FROM user_data_1 a JOIN SYSTEM_RANGE(1, 1000) r ON r.X = a.id"))
+                .hasMessageContaining("表函数");
+        assertThatThrownBy(() -> guard.prepare(
+                "SELECT * FROM user_data_1 WHERE id IN (SELECT X FROM SYSTEM_RANGE(1, 1000000000))"))
+                .hasMessageContaining("表函数");
+    }
+    
+    @Test
+    void rejectsWrites() {
+        assertThatThrownBy(() -> guard.prepare("SELECT * FROM user_data_1 FOR UPDATE")).hasMessage("仅支持只读查询");
+        assertThatThrownBy(() -> guard.prepare("SELECT * INTO user_data_9 FROM user_data_1"))
+                .hasMessage("仅支持只读查询");
+    }
+    
+    private void assertCartesian(String sql) {
+        assertThatThrownBy(() -> guard.prepare(sql)).hasMessageContaining("笛卡尔积");
+    }
+}
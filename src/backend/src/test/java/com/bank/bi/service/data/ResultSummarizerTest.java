@@ -0,0 +1,64 @@
+package com.bank.bi.service.data;
+
+import com.bank.bi.config.HiAgentConfig;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ResultSummarizerTest {
+    
+    private static final int BUDGET = 2000;
+    
+    private final ResultSummarizer summarizer = new ResultSummarizer(new HiAgentConfig());
+    
+    @Test
+    void smallResultIsEmittedInFull() {
+        List<Map<String, Object>> rows = rows(3, 3, 4);
+        String summary = summarizer.summarize(rows);
+        assertThat(summary).startsWith("共 3 行，3 列\n");
+        assertThat(summary).contains("数据:\ncol_0 | col_1 | col_2\n");
+        assertThat(summary).doesNotContain("省略").doesNotContain("抽样");
+        assertThat(summary.lines().filter(line -> line.startsWith("v")).count()).isEqualTo(3);
+    }
+    
+    @Test
+    void longResultIsSampledWithinBudget() {
+        String summary = summarizer.summarize(rows(5000, 4, 20));
+        assertThat(summary).contains("（数据行为均匀抽样的");
+        assertThat(SchemaCatalog.estimateTokens(summary)).isLessThanOrEqualTo(BUDGET);
+    }
+    
+    @Test
+    void wideResultOmitsTrailingColumnsWithinBudget() {
+        String summary = summarizer.summarize(rows(50, 300, 60));
+        assertThat(SchemaCatalog.estimateTokens(summary)).isLessThanOrEqualTo(BUDGET);
+        String header = summary.substring(summary.indexOf("数据:\n") + 4).lines().findFirst().orElseThrow();
+        assertThat(header).startsWith("col_0 | col_1").matches(".* \\| …其余 \\d+ 列省略");
+        // 至少保留一行数据
+        assertThat(summary.lines().filter(line -> line.startsWith("v")).count()).isPositive();
+    }
+    
+    @Test
+    void singleWideRowIsBounded() {
+        String summary = summarizer.summarize(rows(1, 1000, 60));
+        assertThat(SchemaCatalog.estimateTokens(summary)).isLessThanOrEqualTo(BUDGET);
+        assertThat(summary).contains("列省略");
+    }
+    
+    private static List<Map<String, Object>> rows(int count, int columns, int cellChars) {
+        List<Map<String, Object>> rows = new ArrayList<>(count);
+        for (int r = 0; r < count; r++) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            for (int c = 0; c < columns; c++) {
+                row.put("col_" + c, "v" + "x".repeat(cellChars - 1));
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+}